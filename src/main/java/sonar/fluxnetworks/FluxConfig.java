@@ -1,6 +1,7 @@
 package sonar.fluxnetworks;
 
 import com.google.common.collect.Lists;
+import net.minecraft.server.MinecraftServer;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.common.ForgeConfigSpec;
@@ -10,6 +11,8 @@ import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.event.config.ModConfigEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.fml.loading.FMLEnvironment;
+import net.minecraftforge.server.ServerLifecycleHooks;
+import sonar.fluxnetworks.common.connection.FluxNetworkData;
 import sonar.fluxnetworks.common.util.EnergyUtils;
 
 import javax.annotation.Nonnull;
@@ -71,18 +74,27 @@ public class FluxConfig {
     }
 
     public static boolean enableButtonSound, enableGuiDebug;
+    public static int maximumCachedNetworks;
     public static boolean enableOneProbeBasicInfo, enableOneProbeAdvancedInfo, enableOneProbeSneaking;
     public static boolean enableFluxRecipe, enableChunkLoading, enableSuperAdmin;
+    public static int maximumChunksPerNetwork, maximumChunksPerPlayer;
     public static long defaultLimit, basicCapacity, basicTransfer, herculeanCapacity, herculeanTransfer,
             gargantuanCapacity, gargantuanTransfer;
     public static int maximumPerPlayer, superAdminRequiredPermission;
+    public static int networkTickBudget;
+    public static boolean enableParallelTransfer;
+    public static boolean enableUnloadedStorages;
+    // initialized, as messages may arrive before the server config is loaded
+    public static int maximumMessagesPerTick = 32, maximumQueuedMessages = 1024;
     public static boolean enableGTCEU;
+    public static boolean enableFlightRecorder;
 
     @OnlyIn(Dist.CLIENT)
     private static class Client {
 
         private final ForgeConfigSpec.BooleanValue mEnableButtonSound;
         private final ForgeConfigSpec.BooleanValue mEnableGuiDebug;
+        private final ForgeConfigSpec.IntValue mMaximumCachedNetworks;
 
         private Client(@Nonnull ForgeConfigSpec.Builder builder) {
             builder.push("gui");
@@ -95,11 +107,21 @@ public class FluxConfig {
                     .define("enableGuiDebug", false);
 
             builder.pop();
+
+            builder.push("cache");
+            mMaximumCachedNetworks = builder
+                    .comment("The maximum number of networks whose members, connections and statistics are kept",
+                            "on the client, least recently updated ones are released and requested again when viewed")
+                    .translation(FluxNetworks.MODID + ".config." + "maximumCachedNetworks")
+                    .defineInRange("maximumCachedNetworks", 16, 1, 1024);
+
+            builder.pop();
         }
 
         private void load() {
             enableButtonSound = mEnableButtonSound.get();
             enableGuiDebug = mEnableGuiDebug.get();
+            maximumCachedNetworks = mMaximumCachedNetworks.get();
         }
     }
 
@@ -112,6 +134,8 @@ public class FluxConfig {
 
         private final ForgeConfigSpec.BooleanValue mEnableGTCEU;
 
+        private final ForgeConfigSpec.BooleanValue mEnableFlightRecorder;
+
         private Common(@Nonnull ForgeConfigSpec.Builder builder) {
             builder.comment("Most configs are moved to /serverconfig/fluxnetworks-server.toml",
                             "Copy to /defaultconfig/fluxnetworks-server.toml for modpacks")
@@ -146,6 +170,17 @@ public class FluxConfig {
                     .define("enableGTCEU", true);
 
             builder.pop();
+
+            builder.comment("Debug")
+                    .push("debug");
+
+            mEnableFlightRecorder = builder
+                    .comment("Emit Java Flight Recorder events for network ticks, capability sends, data saving,",
+                            "messages and wireless charging. They are only recorded while a JFR recording is running.")
+                    .translation(FluxNetworks.MODID + ".config." + "enableFlightRecorder")
+                    .define("enableFlightRecorder", false);
+
+            builder.pop();
         }
 
         private void load() {
@@ -154,6 +189,8 @@ public class FluxConfig {
             enableOneProbeSneaking = mEnableOneProbeSneaking.get();
 
             enableGTCEU = mEnableGTCEU.get();
+
+            enableFlightRecorder = mEnableFlightRecorder.get();
         }
     }
 
@@ -163,10 +200,17 @@ public class FluxConfig {
         private final ForgeConfigSpec.IntValue mMaximumPerPlayer;
         private final ForgeConfigSpec.IntValue mSuperAdminRequiredPermission;
         private final ForgeConfigSpec.BooleanValue mEnableSuperAdmin;
+        private final ForgeConfigSpec.IntValue mNetworkTickBudget;
+        private final ForgeConfigSpec.BooleanValue mEnableParallelTransfer;
+        private final ForgeConfigSpec.BooleanValue mEnableUnloadedStorages;
+
+        // messages
+        private final ForgeConfigSpec.IntValue mMaximumMessagesPerTick, mMaximumQueuedMessages;
 
         // general
         private final ForgeConfigSpec.BooleanValue mEnableFluxRecipe;
         private final ForgeConfigSpec.BooleanValue mEnableChunkLoading;
+        private final ForgeConfigSpec.IntValue mMaximumChunksPerNetwork, mMaximumChunksPerPlayer;
         //private final ForgeConfigSpec.BooleanValue mChunkLoadingRequiresSuperAdmin;
 
         // blacklist
@@ -197,6 +241,37 @@ public class FluxConfig {
                                     "whether others have this permission level or not.")
                     .translation(FluxNetworks.MODID + ".config." + "superAdminRequiredPermission")
                     .defineInRange("superAdminRequiredPermission", 1, 0, 3);
+            mNetworkTickBudget = builder
+                    .comment("The time budget in microseconds for all networks in a server tick. 0 = no limit",
+                            "Networks over the budget still transfer energy, but defer statistics and wireless " +
+                                    "charging to later ticks.")
+                    .translation(FluxNetworks.MODID + ".config." + "networkTickBudget")
+                    .defineInRange("networkTickBudget", 5000, 0, 1000000);
+            mEnableParallelTransfer = builder
+                    .comment("Match plugs and points of different networks in parallel on worker threads.",
+                            "Only used when there are many networks, external energy transfer is always on the " +
+                                    "server thread.")
+                    .translation(FluxNetworks.MODID + ".config." + "enableParallelTransfer")
+                    .define("enableParallelTransfer", false);
+            mEnableUnloadedStorages = builder
+                    .comment("Allows flux storages in unloaded chunks to keep charging and discharging for their " +
+                            "networks.",
+                            "Their energy is kept in the network data until the chunk is loaded again.")
+                    .translation(FluxNetworks.MODID + ".config." + "enableUnloadedStorages")
+                    .define("enableUnloadedStorages", true);
+            builder.pop();
+
+            builder.push("messages");
+            mMaximumMessagesPerTick = builder
+                    .comment("Maximum GUI messages from each player handled in a server tick, the rest are handled " +
+                            "in later ticks.")
+                    .translation(FluxNetworks.MODID + ".config." + "maximumMessagesPerTick")
+                    .defineInRange("maximumMessagesPerTick", 32, 1, 4096);
+            mMaximumQueuedMessages = builder
+                    .comment("Maximum GUI messages from each player waiting to be handled. A player sending more " +
+                            "is disconnected.")
+                    .translation(FluxNetworks.MODID + ".config." + "maximumQueuedMessages")
+                    .defineInRange("maximumQueuedMessages", 1024, 16, 65536);
             builder.pop();
 
             builder.push("general");
@@ -208,6 +283,14 @@ public class FluxConfig {
                     .comment("Allows flux devices to enable chunk loading.")
                     .translation(FluxNetworks.MODID + ".config." + "enableChunkLoading")
                     .define("enableChunkLoading", true);
+            mMaximumChunksPerNetwork = builder
+                    .comment("Maximum chunks that flux devices of each network can load. -1 = no limit")
+                    .translation(FluxNetworks.MODID + ".config." + "maximumChunksPerNetwork")
+                    .defineInRange("maximumChunksPerNetwork", -1, -1, Integer.MAX_VALUE);
+            mMaximumChunksPerPlayer = builder
+                    .comment("Maximum chunks that flux devices owned by each player can load. -1 = no limit")
+                    .translation(FluxNetworks.MODID + ".config." + "maximumChunksPerPlayer")
+                    .defineInRange("maximumChunksPerPlayer", -1, -1, Integer.MAX_VALUE);
             builder.pop();
 
             builder.push("blacklist");
@@ -256,13 +339,33 @@ public class FluxConfig {
         }
 
         private void load() {
+            final boolean superAdmin = enableSuperAdmin;
+            final int superAdminPermission = superAdminRequiredPermission;
+
             maximumPerPlayer = mMaximumPerPlayer.get();
             superAdminRequiredPermission = mSuperAdminRequiredPermission.get();
+            networkTickBudget = mNetworkTickBudget.get();
+            enableParallelTransfer = mEnableParallelTransfer.get();
+            enableUnloadedStorages = mEnableUnloadedStorages.get();
+
+            maximumMessagesPerTick = mMaximumMessagesPerTick.get();
+            maximumQueuedMessages = mMaximumQueuedMessages.get();
 
             enableFluxRecipe = mEnableFluxRecipe.get();
             enableChunkLoading = mEnableChunkLoading.get();
+            maximumChunksPerNetwork = mMaximumChunksPerNetwork.get();
+            maximumChunksPerPlayer = mMaximumChunksPerPlayer.get();
             enableSuperAdmin = mEnableSuperAdmin.get();
 
+            if (enableSuperAdmin != superAdmin || superAdminRequiredPermission != superAdminPermission) {
+                // cached access of super admins was decided by the old settings,
+                // configs may be reloaded on the file watcher thread
+                final MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+                if (server != null) {
+                    server.execute(() -> FluxNetworkData.getAccessCache().invalidateAll());
+                }
+            }
+
             EnergyUtils.reloadBlacklist(mBlockBlacklistStrings.get(), mItemBlackListStrings.get());
 
             defaultLimit = mDefaultLimit.get();
@@ -139,6 +139,7 @@ public final class FluxConstants {
     public static final String BUFFER = "buffer";
     public static final String ENERGY = "energy"; // equals to buffer, but with different display text
     public static final String CHANGE = "change";
+    public static final String CAPACITY = "capacity";
 
     static {
         // we expect all constants are inline at compile-time
@@ -63,7 +63,14 @@ public class FluxTranslate {
             INPUT = new FluxTranslate("gui.fluxnetworks.flux.input"),
             OUTPUT = new FluxTranslate("gui.fluxnetworks.flux.output"),
             CHANGE = new FluxTranslate("gui.fluxnetworks.flux.change"),
-            AVERAGE_TICK = new FluxTranslate("gui.fluxnetworks.flux.averagetick");
+            AVERAGE_TICK = new FluxTranslate("gui.fluxnetworks.flux.averagetick"),
+            TOP_THROUGHPUT = new FluxTranslate("gui.fluxnetworks.flux.topthroughput"),
+            TOP_STARVED = new FluxTranslate("gui.fluxnetworks.flux.topstarved"),
+            TICK_CYCLE = new FluxTranslate("gui.fluxnetworks.flux.tick.cycle"),
+            TICK_QUEUE = new FluxTranslate("gui.fluxnetworks.flux.tick.queue"),
+            TICK_CYCLE_START = new FluxTranslate("gui.fluxnetworks.flux.tick.cyclestart"),
+            TICK_TRANSFER = new FluxTranslate("gui.fluxnetworks.flux.tick.transfer"),
+            TICK_CYCLE_END = new FluxTranslate("gui.fluxnetworks.flux.tick.cycleend");
 
     public static final FluxTranslate
             SORT_BY = new FluxTranslate("gui.fluxnetworks.label.sortby"),
@@ -86,7 +93,8 @@ public class FluxTranslate {
             YOU = new FluxTranslate("gui.fluxnetworks.label.you"),
             DETAILED_VIEW = new FluxTranslate("gui.fluxnetworks.label.detailedview"),
             CLICK_ABOVE = new FluxTranslate("gui.fluxnetworks.label.clickabove"),
-            PLAYERS_NETWORK = new FluxTranslate("gui.fluxnetworks.label.playersnetwork");
+            PLAYERS_NETWORK = new FluxTranslate("gui.fluxnetworks.label.playersnetwork"),
+            SEARCH = new FluxTranslate("gui.fluxnetworks.label.search");
 
     public static final FluxTranslate
             PUBLIC = new FluxTranslate("gui.fluxnetworks.security.public"),
@@ -96,7 +104,8 @@ public class FluxTranslate {
     public static final FluxTranslate
             SORTING_SMART = new FluxTranslate("gui.fluxnetworks.label.sort.smart"),
             SORTING_ID = new FluxTranslate("gui.fluxnetworks.label.sort.id"),
-            SORTING_NAME = new FluxTranslate("gui.fluxnetworks.label.sort.name");
+            SORTING_NAME = new FluxTranslate("gui.fluxnetworks.label.sort.name"),
+            SORTING_OWNER = new FluxTranslate("gui.fluxnetworks.label.sort.owner");
 
     public static final FluxTranslate
             BATCH_SELECT_BUTTON = new FluxTranslate("gui.fluxnetworks.button.batchselect"),
@@ -1,9 +1,8 @@
 package sonar.fluxnetworks.api.energy;
 
-import sonar.fluxnetworks.common.util.FluxUtils;
+import sonar.fluxnetworks.common.util.EnergyFormat;
 
 import javax.annotation.Nonnull;
-import java.text.NumberFormat;
 
 public enum EnergyType {
     FE("Forge Energy", "FE", "FE/t"),
@@ -33,21 +32,21 @@ public enum EnergyType {
 
     @Nonnull
     public String getUsage(long in) {
-        return NumberFormat.getInstance().format(in) + " " + usage;
+        return EnergyFormat.format(in, usage);
     }
 
     @Nonnull
     public String getUsageCompact(long in) {
-        return FluxUtils.compact(in, usage);
+        return EnergyFormat.compact(in, usage);
     }
 
     @Nonnull
     public String getStorage(long in) {
-        return NumberFormat.getInstance().format(in) + " " + storage;
+        return EnergyFormat.format(in, storage);
     }
 
     @Nonnull
     public String getStorageCompact(long in) {
-        return FluxUtils.compact(in, storage);
+        return EnergyFormat.compact(in, storage);
     }
 }
@@ -1,16 +1,16 @@
 package sonar.fluxnetworks.client;
 
 import it.unimi.dsi.fastutil.ints.*;
-import net.minecraft.core.GlobalPos;
-import net.minecraft.nbt.CompoundTag;
+import net.minecraft.client.Minecraft;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import sonar.fluxnetworks.FluxConfig;
 import sonar.fluxnetworks.FluxNetworks;
 import sonar.fluxnetworks.api.FluxConstants;
-import sonar.fluxnetworks.api.device.IFluxDevice;
+import sonar.fluxnetworks.client.gui.basic.GuiFluxCore;
 import sonar.fluxnetworks.common.connection.ClientFluxNetwork;
 import sonar.fluxnetworks.common.connection.FluxNetwork;
-import sonar.fluxnetworks.common.util.FluxUtils;
+import sonar.fluxnetworks.common.connection.PhantomFluxDevice;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
@@ -28,6 +28,10 @@ public final class ClientCache {
             new Int2ObjectOpenHashMap<>();
     private static final Int2ObjectLinkedOpenHashMap<String> sRecentPasswords =
             new Int2ObjectLinkedOpenHashMap<>(MAX_RECENT_PASSWORD_COUNT); // LRU cache
+    private static final NetworkDirectory sDirectory = new NetworkDirectory();
+    // networks holding members, connections or detailed statistics, LRU order
+    private static final IntLinkedOpenHashSet sDetailed = new IntLinkedOpenHashSet();
+    private static int sEvictions;
 
     public static boolean sSuperAdmin = false;
     public static int sWirelessMode = 0;
@@ -36,6 +40,9 @@ public final class ClientCache {
 
     public static int sAdminViewingNetwork = FluxConstants.INVALID_NETWORK_ID;
 
+    // increased when any network is updated or deleted, for caches derived from networks
+    private static int sRevision;
+
     private ClientCache() {
     }
 
@@ -45,8 +52,13 @@ public final class ClientCache {
     public static void release() {
         sNetworks.clear();
         sNetworks.trim(); // rehash
+        sDirectory.clear();
+        sDetailed.clear();
+        sDetailed.trim();
+        sEvictions = 0;
         sRecentPasswords.clear(); // preserved memory, no need to rehash
         sAdminViewingNetwork = FluxConstants.INVALID_NETWORK_ID;
+        sRevision++;
         FluxNetworks.LOGGER.info("Released client Flux Networks cache");
     }
 
@@ -55,28 +67,51 @@ public final class ClientCache {
      */
     public static void cleanup() {
         sNetworks.values().forEach(FluxNetwork::onDelete);
+        sDetailed.clear();
     }
 
-    public static void updateNetwork(@Nonnull Int2ObjectMap<CompoundTag> map, byte type) {
+    /**
+     * Apply network updates decoded off the main thread.
+     */
+    public static void updateNetwork(@Nonnull Int2ObjectMap<NetworkSnapshot> map, byte type) {
         for (var e : map.int2ObjectEntrySet()) {
-            sNetworks.computeIfAbsent(e.getIntKey(), ClientFluxNetwork::new)
-                    .readCustomTag(e.getValue(), type);
+            final FluxNetwork network = sNetworks.computeIfAbsent(e.getIntKey(), ClientFluxNetwork::new);
+            e.getValue().applyTo((ClientFluxNetwork) network);
+            sDirectory.update(e.getIntKey(), network);
+            if (type != FluxConstants.NBT_NET_BASIC) {
+                touchDetails(e.getIntKey());
+            }
         }
+        sRevision++;
     }
 
-    public static void updateConnections(int networkID, @Nonnull List<CompoundTag> tags) {
+    /**
+     * Apply connection updates decoded off the main thread, devices are updated in place.
+     */
+    public static void updateConnections(int networkID, @Nonnull List<PhantomFluxDevice> devices) {
         final FluxNetwork network = sNetworks.get(networkID);
         if (network != null) {
-            for (var tag : tags) {
-                final GlobalPos pos = FluxUtils.readGlobalPos(tag);
-                final IFluxDevice device = network.getConnectionByPos(pos);
-                if (device != null) {
-                    device.readCustomTag(tag, FluxConstants.NBT_PHANTOM_UPDATE);
+            touchDetails(networkID);
+            for (var updated : devices) {
+                if (network.getConnectionByPos(updated.getGlobalPos()) instanceof PhantomFluxDevice device) {
+                    device.copyUpdated(updated);
                 }
             }
         }
     }
 
+    /**
+     * Append streamed statistics history samples.
+     *
+     * @see sonar.fluxnetworks.common.connection.ClientNetworkHistory#append(int, long, long[], int)
+     */
+    public static void updateHistory(int networkID, int resolution, long start, @Nonnull long[] samples, int n) {
+        if (sNetworks.get(networkID) instanceof ClientFluxNetwork network) {
+            touchDetails(networkID);
+            network.getClientHistory().append(resolution, start, samples, n);
+        }
+    }
+
     @Nonnull
     public static FluxNetwork getNetwork(int id) {
         return sNetworks.getOrDefault(id, FluxNetwork.INVALID);
@@ -87,8 +122,67 @@ public final class ClientCache {
         return sNetworks.values();
     }
 
+    /**
+     * @return sorted views and search of all networks
+     */
+    @Nonnull
+    public static NetworkDirectory getDirectory() {
+        return sDirectory;
+    }
+
     public static void deleteNetwork(int id) {
         sNetworks.remove(id);
+        sDirectory.remove(id);
+        sDetailed.remove(id);
+        sRevision++;
+    }
+
+    /**
+     * @return the revision of networks, changed when any network is updated or deleted
+     */
+    public static int getRevision() {
+        return sRevision;
+    }
+
+    /**
+     * Mark the details of a network as recently used, and release details of the least
+     * recently used networks beyond {@link FluxConfig#maximumCachedNetworks}.
+     */
+    private static void touchDetails(int id) {
+        sDetailed.addAndMoveToLast(id);
+        int excess = sDetailed.size() - FluxConfig.maximumCachedNetworks;
+        if (excess <= 0) {
+            return;
+        }
+        // don't release the network being viewed
+        final int viewing = Minecraft.getInstance().screen instanceof GuiFluxCore gui ?
+                gui.getNetwork().getNetworkID() : FluxConstants.INVALID_NETWORK_ID;
+        for (var it = sDetailed.iterator(); excess > 0 && it.hasNext(); ) {
+            final int eldest = it.nextInt();
+            if (eldest == id || eldest == viewing) {
+                continue;
+            }
+            it.remove();
+            if (sNetworks.get(eldest) instanceof ClientFluxNetwork network) {
+                network.releaseDetails();
+            }
+            sEvictions++;
+            excess--;
+        }
+    }
+
+    /**
+     * @return the number of networks holding members, connections or detailed statistics
+     */
+    public static int getDetailedCount() {
+        return sDetailed.size();
+    }
+
+    /**
+     * @return the number of networks whose details have been released since login
+     */
+    public static int getEvictionCount() {
+        return sEvictions;
     }
 
     @Nonnull
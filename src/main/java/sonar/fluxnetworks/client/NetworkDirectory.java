@@ -0,0 +1,228 @@
+package sonar.fluxnetworks.client;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import sonar.fluxnetworks.client.gui.basic.GuiTabPages.SortType;
+import sonar.fluxnetworks.common.connection.FluxNetwork;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * Sorted views and a name search index over networks known by the client.
+ * <p>
+ * Networks are kept sorted by ID, name and owner, and each update only moves the network in each
+ * view. Names are indexed by all their lower-case substrings of up to three characters, so that
+ * a search only visits the networks sharing the rarest trigram of the query, rather than all
+ * networks. Main thread only.
+ *
+ * @see ClientCache#getDirectory()
+ */
+@OnlyIn(Dist.CLIENT)
+public final class NetworkDirectory {
+
+    private static final int MAX_GRAM_LENGTH = 3;
+
+    private static final Comparator<Entry> BY_ID = Comparator.comparingInt(e -> e.mID);
+    private static final Comparator<Entry> BY_NAME = Comparator.<Entry, String>comparing(e -> e.mName)
+            .thenComparing(BY_ID);
+    private static final Comparator<Entry> BY_OWNER = Comparator.<Entry, UUID>comparing(e -> e.mOwner)
+            .thenComparing(BY_NAME);
+
+    private final Int2ObjectOpenHashMap<Entry> mEntries = new Int2ObjectOpenHashMap<>();
+
+    private final ArrayList<Entry> mByID = new ArrayList<>();
+    private final ArrayList<Entry> mByName = new ArrayList<>();
+    private final ArrayList<Entry> mByOwner = new ArrayList<>();
+
+    private final List<FluxNetwork> mByIDView = new View(mByID);
+    private final List<FluxNetwork> mByNameView = new View(mByName);
+    private final List<FluxNetwork> mByOwnerView = new View(mByOwner);
+
+    // n-gram of lower-case name -> entries
+    private final Long2ObjectOpenHashMap<ReferenceOpenHashSet<Entry>> mGrams = new Long2ObjectOpenHashMap<>();
+
+    NetworkDirectory() {
+    }
+
+    /**
+     * Add a network, or refresh it after its name or owner changed.
+     *
+     * @param id the network ID, the network may not have received its basic data yet
+     */
+    void update(int id, @Nonnull FluxNetwork network) {
+        Entry e = mEntries.get(id);
+        if (e != null) {
+            if (e.mNetwork == network &&
+                    e.mName.equals(network.getNetworkName()) && e.mOwner.equals(network.getOwnerUUID())) {
+                // sort keys unchanged
+                return;
+            }
+            remove(e);
+        }
+        e = new Entry(id, network);
+        mEntries.put(e.mID, e);
+        insert(mByID, e, BY_ID);
+        insert(mByName, e, BY_NAME);
+        insert(mByOwner, e, BY_OWNER);
+        final String name = e.mLowerName;
+        for (int len = 1; len <= MAX_GRAM_LENGTH; len++) {
+            for (int i = 0; i + len <= name.length(); i++) {
+                mGrams.computeIfAbsent(gram(name, i, len), __ -> new ReferenceOpenHashSet<>()).add(e);
+            }
+        }
+    }
+
+    void remove(int networkID) {
+        final Entry e = mEntries.get(networkID);
+        if (e != null) {
+            remove(e);
+        }
+    }
+
+    void clear() {
+        mEntries.clear();
+        mByID.clear();
+        mByName.clear();
+        mByOwner.clear();
+        mGrams.clear();
+    }
+
+    private void remove(@Nonnull Entry e) {
+        mEntries.remove(e.mID);
+        mByID.remove(Collections.binarySearch(mByID, e, BY_ID));
+        mByName.remove(Collections.binarySearch(mByName, e, BY_NAME));
+        mByOwner.remove(Collections.binarySearch(mByOwner, e, BY_OWNER));
+        final String name = e.mLowerName;
+        for (int len = 1; len <= MAX_GRAM_LENGTH; len++) {
+            for (int i = 0; i + len <= name.length(); i++) {
+                final long gram = gram(name, i, len);
+                final ReferenceOpenHashSet<Entry> set = mGrams.get(gram);
+                if (set != null && set.remove(e) && set.isEmpty()) {
+                    mGrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static void insert(@Nonnull ArrayList<Entry> list, @Nonnull Entry e, @Nonnull Comparator<Entry> c) {
+        // keys are unique as they end with the network ID
+        list.add(-Collections.binarySearch(list, e, c) - 1, e);
+    }
+
+    // pack the length and up to three UTF-16 chars
+    private static long gram(@Nonnull String s, int start, int len) {
+        long gram = len;
+        for (int i = 0; i < len; i++) {
+            gram = (gram << 16) | s.charAt(start + i);
+        }
+        return gram;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return an unmodifiable live view of all networks in the given order
+     */
+    @Nonnull
+    public List<FluxNetwork> getSorted(@Nonnull SortType sortType) {
+        return switch (sortType) {
+            case ID -> mByIDView;
+            case NAME -> mByNameView;
+            case OWNER -> mByOwnerView;
+        };
+    }
+
+    /**
+     * Find networks whose names contain the query, ignoring case.
+     *
+     * @param query    the query, empty to match all networks
+     * @param sortType the order of results
+     * @return a new list of matched networks in the given order
+     */
+    @Nonnull
+    public List<FluxNetwork> search(@Nonnull String query, @Nonnull SortType sortType) {
+        if (query.isEmpty()) {
+            return new ArrayList<>(getSorted(sortType));
+        }
+        query = query.toLowerCase(Locale.ROOT);
+        final ReferenceOpenHashSet<Entry> candidates;
+        if (query.length() <= MAX_GRAM_LENGTH) {
+            // exact
+            candidates = mGrams.get(gram(query, 0, query.length()));
+        } else {
+            ReferenceOpenHashSet<Entry> rarest = null;
+            for (int i = 0; i + MAX_GRAM_LENGTH <= query.length(); i++) {
+                final ReferenceOpenHashSet<Entry> set = mGrams.get(gram(query, i, MAX_GRAM_LENGTH));
+                if (set == null) {
+                    return new ArrayList<>();
+                }
+                if (rarest == null || set.size() < rarest.size()) {
+                    rarest = set;
+                }
+            }
+            candidates = rarest;
+        }
+        if (candidates == null) {
+            return new ArrayList<>();
+        }
+        final ArrayList<Entry> results = new ArrayList<>(candidates.size());
+        for (Entry e : candidates) {
+            if (query.length() <= MAX_GRAM_LENGTH || e.mLowerName.contains(query)) {
+                results.add(e);
+            }
+        }
+        results.sort(switch (sortType) {
+            case ID -> BY_ID;
+            case NAME -> BY_NAME;
+            case OWNER -> BY_OWNER;
+        });
+        final ArrayList<FluxNetwork> networks = new ArrayList<>(results.size());
+        for (Entry e : results) {
+            networks.add(e.mNetwork);
+        }
+        return networks;
+    }
+
+    // a snapshot of sort keys, the network may change before it's updated here
+    private static final class Entry {
+
+        private final FluxNetwork mNetwork;
+        private final int mID;
+        private final String mName;
+        private final String mLowerName;
+        private final UUID mOwner;
+
+        Entry(int id, @Nonnull FluxNetwork network) {
+            mNetwork = network;
+            mID = id;
+            mName = network.getNetworkName();
+            mLowerName = mName.toLowerCase(Locale.ROOT);
+            mOwner = network.getOwnerUUID();
+        }
+    }
+
+    private static final class View extends AbstractList<FluxNetwork> implements RandomAccess {
+
+        private final ArrayList<Entry> mList;
+
+        View(@Nonnull ArrayList<Entry> list) {
+            mList = list;
+        }
+
+        @Override
+        public FluxNetwork get(int index) {
+            return mList.get(index).mNetwork;
+        }
+
+        @Override
+        public int size() {
+            return mList.size();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package sonar.fluxnetworks.client;
+
+import net.minecraft.core.GlobalPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import sonar.fluxnetworks.api.FluxConstants;
+import sonar.fluxnetworks.api.device.IFluxDevice;
+import sonar.fluxnetworks.api.network.NetworkMember;
+import sonar.fluxnetworks.common.connection.ClientFluxNetwork;
+import sonar.fluxnetworks.common.connection.FluxNetwork;
+import sonar.fluxnetworks.common.connection.PhantomFluxDevice;
+import sonar.fluxnetworks.common.util.FluxUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Network data of a S2C network update, decoded on the network thread.
+ * <p>
+ * Members and connections are decoded into new maps, which are then swapped into the network on
+ * the main thread as a whole. Other data is small and read from the tag when applied. A snapshot
+ * is not modified after decoding, and can be applied only once, as it hands its maps over.
+ *
+ * @see ClientCache#updateNetwork(it.unimi.dsi.fastutil.ints.Int2ObjectMap, byte)
+ */
+@OnlyIn(Dist.CLIENT)
+public final class NetworkSnapshot {
+
+    private final byte mType;
+    private final CompoundTag mTag;
+
+    @Nullable
+    private final HashMap<UUID, NetworkMember> mMembers;
+    @Nullable
+    private final HashMap<GlobalPos, IFluxDevice> mConnections;
+
+    private NetworkSnapshot(byte type, @Nonnull CompoundTag tag,
+                            @Nullable HashMap<UUID, NetworkMember> members,
+                            @Nullable HashMap<GlobalPos, IFluxDevice> connections) {
+        mType = type;
+        mTag = tag;
+        mMembers = members;
+        mConnections = connections;
+    }
+
+    /**
+     * Decode a network tag, can be called from any thread.
+     *
+     * @param tag  the tag written by {@link FluxNetwork#writeCustomTag(CompoundTag, byte)}
+     * @param type the NBT type, e.g. {@link FluxConstants#NBT_NET_MEMBERS}
+     */
+    @Nonnull
+    public static NetworkSnapshot decode(@Nonnull CompoundTag tag, byte type) {
+        HashMap<UUID, NetworkMember> members = null;
+        HashMap<GlobalPos, IFluxDevice> connections = null;
+        if (type == FluxConstants.NBT_NET_MEMBERS) {
+            final ListTag list = tag.getList(FluxNetwork.MEMBERS, Tag.TAG_COMPOUND);
+            members = new HashMap<>(list.size() * 4 / 3 + 1);
+            for (int i = 0; i < list.size(); i++) {
+                NetworkMember m = new NetworkMember(list.getCompound(i));
+                members.put(m.getPlayerUUID(), m);
+            }
+        } else if (type == FluxConstants.NBT_NET_ALL_CONNECTIONS) {
+            final ListTag list = tag.getList(FluxNetwork.CONNECTIONS, Tag.TAG_COMPOUND);
+            connections = new HashMap<>(list.size() * 4 / 3 + 1);
+            for (int i = 0; i < list.size(); i++) {
+                CompoundTag c = list.getCompound(i);
+                GlobalPos pos = FluxUtils.readGlobalPos(c);
+                connections.put(pos, PhantomFluxDevice.makeUpdated(pos, c));
+            }
+        }
+        return new NetworkSnapshot(type, tag, members, connections);
+    }
+
+    /**
+     * Apply to the network, main thread only.
+     */
+    void applyTo(@Nonnull ClientFluxNetwork network) {
+        if (mMembers != null) {
+            network.setMembers(mMembers);
+        } else if (mConnections != null) {
+            network.setConnections(mConnections);
+        } else {
+            network.readCustomTag(mTag, mType);
+        }
+    }
+}
@@ -134,9 +134,18 @@ public abstract class GuiFluxCore extends GuiPopupHost {
 
     @Override
     public void onClose() {
+        // closed by the player, send before the close packet
+        ClientMessages.flushEditTile();
         super.onClose();
     }
 
+    @Override
+    public void removed() {
+        // every other path, e.g. closed by the server or replaced by another screen
+        ClientMessages.flushEditTile();
+        super.removed();
+    }
+
     /**
      * Render the network bar on the top.
      */
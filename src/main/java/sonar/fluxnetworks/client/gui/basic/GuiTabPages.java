@@ -120,13 +120,20 @@ public abstract class GuiTabPages<T> extends GuiTabCore {
     protected void refreshPages(Collection<T> elements) {
         mElements.clear();
         mElements.addAll(elements);
-        if (elements.isEmpty()) {
+        sortGrids(mSortType);
+        refreshPageCount();
+    }
+
+    /**
+     * Recompute the number of pages after elements were added or removed, then refresh current page.
+     */
+    protected void refreshPageCount() {
+        final int count = getElementCount();
+        if (count == 0) {
             mPages = 1;
         } else {
-            mPages = (int) Math.ceil(elements.size() / (double) mGridPerPage);
+            mPages = (count + mGridPerPage - 1) / mGridPerPage;
         }
-        mPage = Math.min(mPage, mPages - 1);
-        sortGrids(mSortType);
         refreshCurrentPage();
     }
 
@@ -134,19 +141,27 @@ public abstract class GuiTabPages<T> extends GuiTabCore {
         mPage = Math.min(mPage, mPages - 1);
         mLabelButton.refreshPages(mPage, mPages);
 
-        if (mElements.isEmpty()) {
-            return;
-        }
-
         mCurrent.clear();
         int start = mPage * mGridPerPage;
-        int end = Math.min(mElements.size(), start + mGridPerPage);
+        int end = Math.min(getElementCount(), start + mGridPerPage);
 
         for (int i = start; i < end; i++) {
-            mCurrent.add(mElements.get(i));
+            mCurrent.add(getElement(i));
         }
     }
 
+    /**
+     * Override this and {@link #getElement(int)} to page elements that are not in {@link #mElements},
+     * then only the rows of current page are materialized.
+     */
+    protected int getElementCount() {
+        return mElements.size();
+    }
+
+    protected T getElement(int index) {
+        return mElements.get(index);
+    }
+
     protected void sortGrids(SortType sortType) {
     }
 
@@ -160,7 +175,8 @@ public abstract class GuiTabPages<T> extends GuiTabCore {
 
     public enum SortType {
         ID(FluxTranslate.SORTING_ID),
-        NAME(FluxTranslate.SORTING_NAME);
+        NAME(FluxTranslate.SORTING_NAME),
+        OWNER(FluxTranslate.SORTING_OWNER);
 
         private final FluxTranslate mName;
 
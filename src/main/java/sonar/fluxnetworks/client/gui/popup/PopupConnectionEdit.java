@@ -18,8 +18,8 @@ import sonar.fluxnetworks.common.device.TileFluxDevice;
 import sonar.fluxnetworks.register.ClientMessages;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class PopupConnectionEdit extends GuiPopupCore<GuiTabConnections> {
 
@@ -58,7 +58,7 @@ public class PopupConnectionEdit extends GuiPopupCore<GuiTabConnections> {
         mButtons.add(mApply);
 
         int color = mHost.getNetwork().getNetworkColor() | 0xFF000000;
-        IFluxDevice singleConnection = mHost.mSelected.size() == 1 ? mHost.mSelected.iterator().next() : null;
+        IFluxDevice singleConnection = mHost.getSingleSelected();
         //if (mHost.mBatchMode) {
         mCustomName = FluxEditBox.create(FluxTranslate.NAME.get() + ": ", font, leftPos + 20, topPos + 30, 136, 12)
                 .setOutlineColor(color);
@@ -209,7 +209,7 @@ public class PopupConnectionEdit extends GuiPopupCore<GuiTabConnections> {
         if (button == mCancel) {
             mHost.closePopup();
         } else if (button == mApply) {
-            List<GlobalPos> list = mHost.mSelected.stream().map(IFluxDevice::getGlobalPos).collect(Collectors.toList());
+            List<GlobalPos> list = new ArrayList<>(mHost.mSelected);
             CompoundTag tag = new CompoundTag();
             //if (mBatchMode) {
             if (mEditCustomName.isChecked()) {
@@ -0,0 +1,160 @@
+package sonar.fluxnetworks.client.gui.tab;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.core.GlobalPos;
+import sonar.fluxnetworks.api.device.IFluxDevice;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Sorted connections of a network for {@link GuiTabConnections}.
+ * <p>
+ * Each connection has a precomputed sort key and entries are kept sorted by key, so that updated
+ * connections are moved into place rather than sorting all connections again. Rows of a page are
+ * read by index, without copying the connections.
+ */
+final class ConnectionIndex {
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private final Object2ObjectOpenHashMap<GlobalPos, Entry> mByPos = new Object2ObjectOpenHashMap<>();
+
+    /**
+     * Replace all connections, e.g. after a full connections update.
+     */
+    void rebuild(@Nonnull Collection<IFluxDevice> connections) {
+        mEntries.clear();
+        mByPos.clear();
+        mEntries.ensureCapacity(connections.size());
+        for (IFluxDevice device : connections) {
+            Entry e = new Entry(device);
+            mEntries.add(e);
+            mByPos.put(device.getGlobalPos(), e);
+        }
+        // stable
+        mEntries.sort(null);
+    }
+
+    /**
+     * Move a connection into place after its state changed, e.g. priority or chunk loading.
+     *
+     * @return true if the connection was moved
+     */
+    boolean update(@Nonnull IFluxDevice device) {
+        final Entry e = mByPos.get(device.getGlobalPos());
+        if (e == null) {
+            return false;
+        }
+        e.mDevice = device;
+        final long key = makeKey(device);
+        if (key == e.mKey) {
+            return false;
+        }
+        mEntries.remove(indexOf(e));
+        e.mKey = key;
+        mEntries.add(upperBound(key), e);
+        return true;
+    }
+
+    void remove(@Nonnull GlobalPos pos) {
+        final Entry e = mByPos.remove(pos);
+        if (e != null) {
+            mEntries.remove(indexOf(e));
+        }
+    }
+
+    boolean contains(@Nonnull GlobalPos pos) {
+        return mByPos.containsKey(pos);
+    }
+
+    @Nullable
+    IFluxDevice get(@Nonnull GlobalPos pos) {
+        final Entry e = mByPos.get(pos);
+        return e != null ? e.mDevice : null;
+    }
+
+    @Nonnull
+    IFluxDevice get(int index) {
+        return mEntries.get(index).mDevice;
+    }
+
+    int size() {
+        return mEntries.size();
+    }
+
+    private int indexOf(@Nonnull Entry e) {
+        for (int i = lowerBound(e.mKey), size = mEntries.size(); i < size; i++) {
+            if (mEntries.get(i) == e) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    // the first index whose key is not less than the given key
+    private int lowerBound(long key) {
+        int low = 0, high = mEntries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mEntries.get(mid).mKey < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // the first index whose key is greater than the given key
+    private int upperBound(long key) {
+        int low = 0, high = mEntries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mEntries.get(mid).mKey <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Smart sorting: loaded first, then controllers, points, plugs and storages,
+     * then higher priority first.
+     */
+    private static long makeKey(@Nonnull IFluxDevice device) {
+        long key = (long) Integer.MAX_VALUE - device.getRawPriority(); // [0, 2^32)
+        if (device.getDeviceType().isPoint()) {
+            key |= 1L << 32;
+        }
+        if (device.getDeviceType().isPlug()) {
+            key |= 1L << 33;
+        }
+        if (device.getDeviceType().isStorage()) {
+            key |= 1L << 34;
+        }
+        if (!device.isChunkLoaded()) {
+            key |= 1L << 35;
+        }
+        return key;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private IFluxDevice mDevice;
+        private long mKey;
+
+        Entry(@Nonnull IFluxDevice device) {
+            mDevice = device;
+            mKey = makeKey(device);
+        }
+
+        @Override
+        public int compareTo(@Nonnull Entry o) {
+            return Long.compare(mKey, o.mKey);
+        }
+    }
+}
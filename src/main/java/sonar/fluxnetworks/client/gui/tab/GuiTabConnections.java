@@ -1,8 +1,10 @@
 package sonar.fluxnetworks.client.gui.tab;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.core.GlobalPos;
 import net.minecraft.locale.Language;
 import net.minecraft.network.chat.Component;
 import net.minecraft.world.entity.player.Player;
@@ -21,19 +23,22 @@ import sonar.fluxnetworks.common.util.FluxUtils;
 import sonar.fluxnetworks.register.ClientMessages;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.LinkedHashSet;
+import java.util.Collection;
 import java.util.List;
-import java.util.function.Function;
 
 public class GuiTabConnections extends GuiTabPages<IFluxDevice> {
 
     //public InvisibleButton redirectButton;
 
-    public final LinkedHashSet<IFluxDevice> mSelected = new LinkedHashSet<>();
+    // positions of selected connections, they survive full connections updates
+    public final ObjectLinkedOpenHashSet<GlobalPos> mSelected = new ObjectLinkedOpenHashSet<>();
     public boolean mSelectionMode;
 
+    // connections are paged from the index rather than mElements
+    private final ConnectionIndex mIndex = new ConnectionIndex();
+
     public EditButton mMultiselect;
     public EditButton mEdit;
     public EditButton mDisconnect;
@@ -114,7 +119,7 @@ public class GuiTabConnections extends GuiTabPages<IFluxDevice> {
         int textColor = 0xffffff;
 
         if (mSelectionMode) {
-            if (mSelected.contains(element)) {
+            if (mSelected.contains(element.getGlobalPos())) {
                 gr.fill(x - 5, y + 1, x - 3, y + mElementHeight - 1, 0xccffffff);
                 gr.fill(x + mElementWidth + 3, y + 1, x + mElementWidth + 5, y + mElementHeight - 1,
                         0xccffffff);
@@ -200,13 +205,13 @@ public class GuiTabConnections extends GuiTabPages<IFluxDevice> {
     protected void onElementClicked(IFluxDevice element, int mouseButton) {
         if (mSelectionMode &&
                 (mouseButton == GLFW.GLFW_MOUSE_BUTTON_LEFT || mouseButton == GLFW.GLFW_MOUSE_BUTTON_RIGHT)) {
-            if (mSelected.remove(element)) {
+            if (mSelected.remove(element.getGlobalPos())) {
                 if (mSelected.isEmpty()) {
                     mEdit.setClickable(false);
                     mDisconnect.setClickable(false);
                 }
             } else if (element.isChunkLoaded()) {
-                mSelected.add(element);
+                mSelected.add(element.getGlobalPos());
                 mEdit.setClickable(true);
                 mDisconnect.setClickable(true);
             }
@@ -304,16 +309,26 @@ public class GuiTabConnections extends GuiTabPages<IFluxDevice> {
         }
         if (key == FluxConstants.REQUEST_UPDATE_NETWORK) {
             refreshPages(getNetwork().getAllConnections());
+        } else if (key == FluxConstants.REQUEST_UPDATE_CONNECTION) {
+            // only connections of current page are updated
+            boolean moved = false;
+            for (IFluxDevice device : mCurrent) {
+                moved |= mIndex.update(device);
+            }
+            if (moved) {
+                refreshCurrentPage();
+            }
         } else if (code == FluxConstants.RESPONSE_SUCCESS) {
             closePopup();
             if (key == FluxConstants.REQUEST_DISCONNECT) {
-                if (mSelected.stream().anyMatch(
-                        f -> f.getGlobalPos().equals(((IFluxDevice) menu.mProvider).getGlobalPos()))) {
+                if (mSelected.contains(((IFluxDevice) menu.mProvider).getGlobalPos())) {
                     switchTab(EnumNavigationTab.TAB_HOME, false);
                     return;
                 }
-                mElements.removeAll(mSelected);
-                refreshCurrentPage();
+                for (GlobalPos pos : mSelected) {
+                    mIndex.remove(pos);
+                }
+                refreshPageCount();
             }
             mSelected.clear();
             mSelectionMode = false;
@@ -333,13 +348,31 @@ public class GuiTabConnections extends GuiTabPages<IFluxDevice> {
     }
 
     @Override
-    protected void sortGrids(SortType sortType) {
-        Comparator<IFluxDevice> comparator =
-                Comparator.comparing((Function<IFluxDevice, Boolean>) f -> !f.isChunkLoaded())
-                        .thenComparing(f -> f.getDeviceType().isStorage())
-                        .thenComparing(f -> f.getDeviceType().isPlug())
-                        .thenComparing(f -> f.getDeviceType().isPoint())
-                        .thenComparingInt(p -> -p.getRawPriority());
-        mElements.sort(comparator);
+    protected void refreshPages(Collection<IFluxDevice> elements) {
+        // sorted by the index, see ConnectionIndex#makeKey
+        mIndex.rebuild(elements);
+        if (mSelected.removeIf(pos -> !mIndex.contains(pos)) && mSelected.isEmpty() && mEdit != null) {
+            mEdit.setClickable(false);
+            mDisconnect.setClickable(false);
+        }
+        refreshPageCount();
+    }
+
+    @Override
+    protected int getElementCount() {
+        return mIndex.size();
+    }
+
+    @Override
+    protected IFluxDevice getElement(int index) {
+        return mIndex.get(index);
+    }
+
+    /**
+     * @return the selected connection, or null if not exactly one connection is selected
+     */
+    @Nullable
+    public IFluxDevice getSingleSelected() {
+        return mSelected.size() == 1 ? mIndex.get(mSelected.first()) : null;
     }
 }
@@ -21,7 +21,7 @@ public class GuiTabDetailedSelection extends GuiTabSelection {
     public GuiTabDetailedSelection(@Nonnull FluxMenu menu, @Nonnull Player player) {
         super(menu, player);
         mGridHeight = 20;
-        mGridPerPage = 6;
+        mGridPerPage = 5;
         mElementWidth = 146;
         mElementHeight = 19;
     }
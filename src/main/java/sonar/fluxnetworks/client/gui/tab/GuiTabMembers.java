@@ -21,6 +21,9 @@ import java.util.*;
 
 public class GuiTabMembers extends GuiTabPages<NetworkMember> {
 
+    // owner is not applicable to members
+    private static final SortType[] MEMBER_SORT_TYPES = {SortType.ID, SortType.NAME};
+
     public NetworkMember mSelectedMember;
 
     //private int timer;
@@ -128,7 +131,7 @@ public class GuiTabMembers extends GuiTabPages<NetworkMember> {
         }
         if (mouseButton == GLFW.GLFW_MOUSE_BUTTON_LEFT) {
             if (mouseX >= leftPos + 45 && mouseX < leftPos + 75 && mouseY >= topPos + 24 && mouseY < topPos + 32) {
-                mSortType = FluxUtils.cycle(mSortType, SortType.values());
+                mSortType = FluxUtils.cycle(mSortType, MEMBER_SORT_TYPES);
                 sortGrids(mSortType);
                 refreshCurrentPage();
                 return true;
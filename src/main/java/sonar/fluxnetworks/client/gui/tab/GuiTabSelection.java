@@ -16,6 +16,7 @@ import sonar.fluxnetworks.client.gui.EnumNavigationTab;
 import sonar.fluxnetworks.client.gui.basic.GuiButtonCore;
 import sonar.fluxnetworks.client.gui.basic.GuiTabPages;
 import sonar.fluxnetworks.client.gui.button.EditButton;
+import sonar.fluxnetworks.client.gui.button.FluxEditBox;
 import sonar.fluxnetworks.client.gui.popup.PopupNetworkPassword;
 import sonar.fluxnetworks.common.connection.FluxMenu;
 import sonar.fluxnetworks.common.connection.FluxNetwork;
@@ -24,18 +25,23 @@ import sonar.fluxnetworks.common.util.FluxUtils;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class GuiTabSelection extends GuiTabPages<FluxNetwork> {
 
     private EditButton mDisconnect;
+    private FluxEditBox mSearch;
     public FluxNetwork mSelectedNetwork;
 
+    // networks are paged from the directory rather than mElements
+    private List<FluxNetwork> mResults = Collections.emptyList();
+
     public GuiTabSelection(@Nonnull FluxMenu menu, @Nonnull Player player) {
         super(menu, player);
         mGridHeight = 13;
-        mGridPerPage = 9;
+        mGridPerPage = 8;
         mElementWidth = 146;
         mElementHeight = 12;
     }
@@ -48,10 +54,10 @@ public class GuiTabSelection extends GuiTabPages<FluxNetwork> {
     @Override
     protected void drawBackgroundLayer(GuiGraphics gr, int mouseX, int mouseY, float deltaTicks) {
         super.drawBackgroundLayer(gr, mouseX, mouseY, deltaTicks);
-        if (mElements.isEmpty()) {
+        if (ClientCache.getDirectory().size() == 0) {
             renderNavigationPrompt(gr, FluxTranslate.ERROR_NO_NETWORK, EnumNavigationTab.TAB_CREATE);
         } else {
-            String total = FluxTranslate.TOTAL.get() + ": " + mElements.size();
+            String total = FluxTranslate.TOTAL.get() + ": " + mResults.size();
             gr.drawString(font, total, leftPos + 158 - font.width(total), topPos + 24, 0xffffff);
             String sortBy = FluxTranslate.SORT_BY.get() + ": " + ChatFormatting.AQUA + mSortType.getTranslatedName();
             gr.drawString(font, sortBy, leftPos + 19, topPos + 24, 0xffffff);
@@ -64,11 +70,28 @@ public class GuiTabSelection extends GuiTabPages<FluxNetwork> {
     public void init() {
         super.init();
         mGridStartX = leftPos + 15;
-        mGridStartY = topPos + 36;
+        mGridStartY = topPos + 50;
+
+        if (ClientCache.getDirectory().size() > 0) {
+            // keep the query when the screen is resized
+            String query = mSearch != null ? mSearch.getValue() : "";
+            mSearch = FluxEditBox.create(FluxTranslate.SEARCH.get() + ": ", font,
+                            leftPos + 15, topPos + 36, 146, 12)
+                    .setOutlineColor(0xFF808080);
+            mSearch.setMaxLength(FluxNetwork.MAX_NETWORK_NAME_LENGTH);
+            mSearch.setValue(query);
+            mSearch.setResponder(string -> {
+                mPage = 0;
+                refreshResults();
+            });
+            addRenderableWidget(mSearch);
+        } else {
+            mSearch = null;
+        }
 
         refreshPages(ClientCache.getAllNetworks());
 
-        if (!mElements.isEmpty()) {
+        if (ClientCache.getDirectory().size() > 0) {
             mDisconnect = new EditButton(this, leftPos + 142, topPos + 10, 8, 8, 0, 0,
                     FluxTranslate.BATCH_DISCONNECT_BUTTON.get(), FluxTranslate.BATCH_DISCONNECT_BUTTON.get());
             mDisconnect.setClickable(getNetwork().isValid());
@@ -154,11 +177,10 @@ public class GuiTabSelection extends GuiTabPages<FluxNetwork> {
         if (mouseButton == GLFW.GLFW_MOUSE_BUTTON_LEFT) {
             if (mouseX >= leftPos + 45 && mouseX < leftPos + 75 && mouseY >= topPos + 24 && mouseY < topPos + 32) {
                 mSortType = FluxUtils.cycle(mSortType, SortType.values());
-                sortGrids(mSortType);
-                refreshCurrentPage();
+                refreshResults();
                 return true;
             }
-            if (mElements.isEmpty()) {
+            if (ClientCache.getDirectory().size() == 0) {
                 return redirectNavigationPrompt(mouseX, mouseY, mouseButton, EnumNavigationTab.TAB_CREATE);
             }
         }
@@ -210,10 +232,28 @@ public class GuiTabSelection extends GuiTabPages<FluxNetwork> {
     }
 
     @Override
-    protected void sortGrids(SortType sortType) {
-        switch (sortType) {
-            case ID -> mElements.sort(Comparator.comparing(FluxNetwork::getNetworkID));
-            case NAME -> mElements.sort(Comparator.comparing(FluxNetwork::getNetworkName));
+    protected void refreshPages(Collection<FluxNetwork> elements) {
+        // the directory is updated along with ClientCache, see NetworkDirectory
+        refreshResults();
+    }
+
+    private void refreshResults() {
+        String query = mSearch != null ? mSearch.getValue() : "";
+        if (query.isEmpty()) {
+            mResults = ClientCache.getDirectory().getSorted(mSortType);
+        } else {
+            mResults = ClientCache.getDirectory().search(query, mSortType);
         }
+        refreshPageCount();
+    }
+
+    @Override
+    protected int getElementCount() {
+        return mResults.size();
+    }
+
+    @Override
+    protected FluxNetwork getElement(int index) {
+        return mResults.get(index);
     }
 }
@@ -2,14 +2,11 @@ package sonar.fluxnetworks.client.gui.tab;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.*;
-import it.unimi.dsi.fastutil.floats.FloatArrayList;
-import it.unimi.dsi.fastutil.floats.FloatList;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongList;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.renderer.GameRenderer;
+import net.minecraft.network.chat.Component;
 import net.minecraft.world.entity.player.Player;
 import org.joml.Matrix4f;
 import sonar.fluxnetworks.api.FluxConstants;
@@ -22,13 +19,26 @@ import sonar.fluxnetworks.common.util.FluxUtils;
 import sonar.fluxnetworks.register.ClientMessages;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class GuiTabStatistics extends GuiTabCore {
 
+    /**
+     * Ticks to wait for a response before requesting samples again.
+     */
+    private static final int POLL_TIMEOUT = 100;
+
     private LineChart mChart;
     private int timer = 0;
 
+    // outstanding requests of each resolution, the responses received when sent and the tick to give up
+    private final int[] mPollReceived = new int[NetworkHistory.RESOLUTION_COUNT];
+    private final int[] mPollExpiry = new int[NetworkHistory.RESOLUTION_COUNT];
+    private int mTicks;
+
     public GuiTabStatistics(@Nonnull FluxMenu menu, @Nonnull Player player) {
         super(menu, player);
         if (getNetwork().isValid()) {
@@ -36,6 +46,26 @@ public class GuiTabStatistics extends GuiTabCore {
         }
     }
 
+    @Nullable
+    private ClientNetworkHistory getHistory() {
+        return getNetwork() instanceof ClientFluxNetwork network ? network.getClientHistory() : null;
+    }
+
+    private void trackStatistics() {
+        final ClientNetworkHistory history = getHistory();
+        if (history != null && mChart != null) {
+            final int resolution = mChart.getResolution();
+            final int received = history.getReceived(resolution);
+            if (mTicks < mPollExpiry[resolution] && received == mPollReceived[resolution]) {
+                // don't request the same samples again
+                return;
+            }
+            mPollReceived[resolution] = received;
+            mPollExpiry[resolution] = mTicks + POLL_TIMEOUT;
+            ClientMessages.trackStatistics(getToken(), getNetwork(), resolution, history.getCount(resolution));
+        }
+    }
+
     @Nonnull
     public EnumNavigationTab getNavigationTab() {
         return EnumNavigationTab.TAB_STATISTICS;
@@ -60,6 +90,11 @@ public class GuiTabStatistics extends GuiTabCore {
                     ChatFormatting.RESET + stats.fluxStorageCount, 82, 24, color);
             gr.drawString(font, ChatFormatting.GRAY + FluxTranslate.CONTROLLERS.get() + ChatFormatting.GRAY + ": " +
                     ChatFormatting.RESET + stats.fluxControllerCount, 82, 36, color);
+            if (mChart != null) {
+                // the channel shown in the chart
+                int cy = 48 + mChart.getChannel() * 12;
+                gr.fill(8, cy, 9, cy + 8, color | 0xff000000);
+            }
             gr.drawString(font,
                     ChatFormatting.GRAY + FluxTranslate.INPUT.get() + ChatFormatting.GRAY + ": " + ChatFormatting.RESET +
                             EnergyType.FE.getUsage(stats.energyInput), 12, 48, color);
@@ -74,19 +109,66 @@ public class GuiTabStatistics extends GuiTabCore {
                             EnergyType.FE.getStorage(stats.totalEnergy), 12, 84, color);
             gr.pose().scale(0.75f, 0.75f, 1);
             gr.drawCenteredString(font,
-                    FluxTranslate.AVERAGE_TICK.get() + ": " + stats.averageTickMicro + " \u00b5s/t",
+                    FluxTranslate.AVERAGE_TICK.get() + ": " + stats.averageTickMicro + " \u00b5s/t, p99: " +
+                            stats.tickHistogram.get(TickHistogram.PHASE_CYCLE, TickHistogram.P99) / 1000 + " \u00b5s",
                     (int) ((imageWidth / 2f) * (1 / 0.75f)), (int) ((imageHeight - 2f) * (1 / 0.75f)), color);
             gr.pose().popPose();
+
+            if (mouseX >= leftPos + 12 && mouseX < leftPos + imageWidth - 12) {
+                if (mouseY >= topPos + imageHeight - 4 && mouseY < topPos + imageHeight + 6) {
+                    renderTickHistogram(gr, stats.tickHistogram, mouseX, mouseY);
+                } else if (mouseY >= topPos + 48 && mouseY < topPos + 68) {
+                    renderTopDevices(gr, FluxTranslate.TOP_THROUGHPUT, stats.topThroughput, false,
+                            mouseX, mouseY);
+                } else if (mouseY >= topPos + 36 && mouseY < topPos + 44) {
+                    renderTopDevices(gr, FluxTranslate.TOP_STARVED, stats.topStarved, true,
+                            mouseX, mouseY);
+                }
+            }
         } else {
             renderNavigationPrompt(gr, FluxTranslate.ERROR_NO_SELECTED, EnumNavigationTab.TAB_SELECTION);
         }
     }
 
+    private static final FluxTranslate[] TICK_PHASES = {FluxTranslate.TICK_CYCLE, FluxTranslate.TICK_QUEUE,
+            FluxTranslate.TICK_CYCLE_START, FluxTranslate.TICK_TRANSFER, FluxTranslate.TICK_CYCLE_END};
+
+    private void renderTickHistogram(GuiGraphics gr, TickHistogram histogram, int mouseX, int mouseY) {
+        List<Component> components = new ArrayList<>();
+        components.add(Component.literal("p50 / p90 / p99 / max (\u00b5s)").withStyle(ChatFormatting.AQUA));
+        for (int phase = 0; phase < TickHistogram.PHASE_COUNT; phase++) {
+            components.add(Component.literal(ChatFormatting.GRAY + TICK_PHASES[phase].get() + ": " +
+                    ChatFormatting.RESET +
+                    histogram.get(phase, TickHistogram.P50) / 1000 + " / " +
+                    histogram.get(phase, TickHistogram.P90) / 1000 + " / " +
+                    histogram.get(phase, TickHistogram.P99) / 1000 + " / " +
+                    histogram.get(phase, TickHistogram.MAX) / 1000));
+        }
+        gr.renderComponentTooltip(font, components, mouseX, mouseY);
+    }
+
+    private void renderTopDevices(GuiGraphics gr, FluxTranslate title, List<DeviceCounters.Entry> entries,
+                                  boolean starved, int mouseX, int mouseY) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Component> components = new ArrayList<>();
+        components.add(title.makeComponent().withStyle(ChatFormatting.AQUA));
+        for (DeviceCounters.Entry e : entries) {
+            String name = e.customName().isEmpty() ? FluxUtils.getDisplayPos(e.pos()) : e.customName();
+            String value = starved ? e.starvedTicks() + " t" :
+                    EnergyType.FE.getStorage(e.throughput());
+            components.add(Component.literal(ChatFormatting.GRAY + name + ": " + ChatFormatting.RESET + value));
+        }
+        gr.renderComponentTooltip(font, components, mouseX, mouseY);
+    }
+
     @Override
     protected void drawBackgroundLayer(GuiGraphics gr, int mouseX, int mouseY, float deltaTicks) {
         super.drawBackgroundLayer(gr, mouseX, mouseY, deltaTicks);
-        if (getNetwork().isValid() && mChart != null) {
-            mChart.drawChart(getMinecraft(), gr, deltaTicks);
+        final ClientNetworkHistory history = getHistory();
+        if (history != null && mChart != null) {
+            mChart.drawChart(getMinecraft(), gr, history);
         }
     }
 
@@ -94,9 +176,12 @@ public class GuiTabStatistics extends GuiTabCore {
     public void init() {
         super.init();
         if (getNetwork().isValid()) {
-            mChart = new LineChart(width / 2 - 48, height / 2 + 20, 50, NetworkStatistics.CHANGE_COUNT, "s",
-                    EnergyType.FE.getStorageSuffix());
-            mChart.updateData(getNetwork().getStatistics().energyChange);
+            int resolution = mChart != null ? mChart.getResolution() : NetworkHistory.SECONDS;
+            int channel = mChart != null ? mChart.getChannel() : NetworkHistory.INPUT;
+            mChart = new LineChart(width / 2 - 48, height / 2 + 20, 50, 100);
+            mChart.setResolution(resolution);
+            mChart.setChannel(channel);
+            trackStatistics();
         }
     }
 
@@ -108,16 +193,43 @@ public class GuiTabStatistics extends GuiTabCore {
         if (!getNetwork().isValid()) {
             return redirectNavigationPrompt(mouseX, mouseY, mouseButton, EnumNavigationTab.TAB_SELECTION);
         }
+        if (mouseButton == 0 && mChart != null) {
+            // select the channel of the chart by the energy rows
+            if (mouseX >= leftPos + 8 && mouseX < leftPos + imageWidth - 12 &&
+                    mouseY >= topPos + 48 && mouseY < topPos + 96) {
+                mChart.setChannel((int) (mouseY - topPos - 48) / 12);
+                return true;
+            }
+            // cycle the resolution
+            if (mChart.isMouseHovered(mouseX, mouseY)) {
+                mChart.setResolution((mChart.getResolution() + 1) % NetworkHistory.RESOLUTION_COUNT);
+                trackStatistics();
+                return true;
+            }
+        }
         return false;
     }
 
+    @Override
+    public boolean onMouseScrolled(double mouseX, double mouseY, double vScroll) {
+        if (mChart != null && vScroll != 0 && mChart.isMouseHovered(mouseX, mouseY)) {
+            if (mChart.zoom(vScroll < 0)) {
+                trackStatistics();
+            }
+            return true;
+        }
+        return super.onMouseScrolled(mouseX, mouseY, vScroll);
+    }
+
     @Override
     protected void containerTick() {
         super.containerTick();
+        mTicks++;
         if (getNetwork().isValid()) {
             timer = (timer + 1) % 20;
             if (timer == 0) {
                 ClientMessages.updateNetwork(getToken(), getNetwork(), FluxConstants.NBT_NET_STATISTICS);
+                trackStatistics();
             }
         }
     }
@@ -127,53 +239,137 @@ public class GuiTabStatistics extends GuiTabCore {
         super.onResponseAction(key, code);
         if (code == FluxConstants.RESPONSE_REJECT) {
             switchTab(EnumNavigationTab.TAB_HOME, false);
-            return;
-        }
-        if (key == FluxConstants.REQUEST_UPDATE_NETWORK) {
-            mChart.updateData(getNetwork().getStatistics().energyChange);
         }
     }
 
     /**
-     * Simple line chart.
+     * Line chart of a channel of the streamed history.
+     * <p>
+     * Samples are decimated to the minimum and maximum of each pixel column, and the columns are
+     * recomputed only when samples change, so drawing costs the same for any number of samples.
      */
     public static class LineChart {
 
+        /**
+         * Units of the time axis for each resolution, in seconds.
+         */
+        private static final int[] UNIT_SECONDS = {60, 3600, 86400};
+        private static final String[] UNITS = {"m", "h", "d"};
+        private static final int LABEL_COUNT = 6;
+
+        private static final float HALF_WIDTH = 1;
+
         private final int x, y;
         private final int height;
+        /**
+         * The number of pixel columns.
+         */
+        private final int width;
+
+        private int resolution = NetworkHistory.SECONDS;
+        private int channel = NetworkHistory.INPUT;
+
+        private String displayUnitX;
+        private final String[] labelsX = new String[LABEL_COUNT];
+        private String displayUnitY = "1";
+        private long maxUnitY = 1;
+        private String suffixUnitY;
+
+        private final long[] columnMin;
+        private final long[] columnMax;
+        private final long[] columnLast;
+        private final float[] columnTop;
+        private final float[] columnBottom;
+        // columns before have no samples
+        private int firstColumn;
+        private float latestY;
+        private String latestLabel = "";
+
+        @Nullable
+        private ClientNetworkHistory source;
+        private int sourceRevision;
+        private boolean dirty = true;
+
+        public LineChart(int x, int y, int height, int width) {
+            this.x = x;
+            this.y = y;
+            this.height = height;
+            this.width = width;
+            columnMin = new long[width];
+            columnMax = new long[width];
+            columnLast = new long[width];
+            columnTop = new float[width];
+            columnBottom = new float[width];
+            firstColumn = width;
+            updateLabels();
+        }
 
-        private final int linePoints;
+        public int getResolution() {
+            return resolution;
+        }
 
-        private final String displayUnitX;
-        private String displayUnitY;
+        public int getChannel() {
+            return channel;
+        }
 
-        private long maxUnitY;
-        private final String suffixUnitY;
+        public void setChannel(int channel) {
+            if (this.channel != channel) {
+                this.channel = channel;
+                updateLabels();
+            }
+        }
 
-        private LongList data = new LongArrayList();
+        /**
+         * Zoom to a finer or coarser resolution.
+         *
+         * @param coarser true to zoom out
+         * @return true if the resolution is changed
+         */
+        public boolean zoom(boolean coarser) {
+            int next = resolution + (coarser ? 1 : -1);
+            if (next < 0 || next >= NetworkHistory.RESOLUTION_COUNT) {
+                return false;
+            }
+            setResolution(next);
+            return true;
+        }
 
-        private final FloatList currentHeight;
-        private final FloatList targetHeight;
+        /**
+         * @param resolution the resolution of the history, e.g. {@link NetworkHistory#SECONDS}
+         */
+        public void setResolution(int resolution) {
+            if (this.resolution != resolution) {
+                this.resolution = resolution;
+                updateLabels();
+            }
+        }
 
-        public LineChart(int x, int y, int height, int linePoints, String displayUnitX, String suffixUnitY) {
-            this.x = x;
-            this.y = y;
-            this.height = height;
-            this.linePoints = linePoints;
-            this.displayUnitX = displayUnitX;
-            this.suffixUnitY = suffixUnitY;
+        public boolean isMouseHovered(double mouseX, double mouseY) {
+            return mouseX >= x - 16 && mouseX < x + width + 16 && mouseY >= y - 8 && mouseY < y + height + 10;
+        }
 
-            this.currentHeight = new FloatArrayList(linePoints);
-            for (int i = 0; i < linePoints; i++) {
-                currentHeight.add(y + height);
-            }
-            this.targetHeight = new FloatArrayList(linePoints);
-            for (int i = 0; i < linePoints; i++) {
-                targetHeight.add(y + height);
+        private void updateLabels() {
+            displayUnitX = UNITS[resolution];
+            // the time span of the chart in units
+            double span = (double) NetworkHistory.getCapacity(resolution) * NetworkHistory.getInterval(resolution) /
+                    UNIT_SECONDS[resolution];
+            for (int i = 0; i < LABEL_COUNT; i++) {
+                long tenths = Math.round(span * (LABEL_COUNT - 1 - i) / (LABEL_COUNT - 1) * 10);
+                labelsX[i] = tenths % 10 == 0 ? String.valueOf(tenths / 10) : tenths / 10 + "." + tenths % 10;
             }
+            suffixUnitY = channel == NetworkHistory.INPUT || channel == NetworkHistory.OUTPUT ?
+                    EnergyType.FE.getUsageSuffix() : EnergyType.FE.getStorageSuffix();
+            dirty = true;
         }
 
-        public void drawChart(Minecraft mc, GuiGraphics gr, float deltaTicks) {
+        public void drawChart(Minecraft mc, GuiGraphics gr, @Nonnull ClientNetworkHistory history) {
+            if (dirty || source != history || sourceRevision != history.getRevision()) {
+                source = history;
+                sourceRevision = history.getRevision();
+                dirty = false;
+                decimate(history);
+            }
+
             RenderSystem.enableBlend();
             RenderSystem.defaultBlendFunc();
 
@@ -182,31 +378,27 @@ public class GuiTabStatistics extends GuiTabCore {
 
             RenderSystem.setShader(GameRenderer::getPositionColorShader);
 
+            Matrix4f matrix = gr.pose().last().pose();
             builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_COLOR);
-            float hw = 1;
-            for (int i = 0; i < currentHeight.size() - 1; i++) {
-                float lx = x + 20 * i;
-                float ly = currentHeight.getFloat(i);
-                float rx = x + 20 * (i + 1);
-                float ry = currentHeight.getFloat(i + 1);
-                Matrix4f matrix = gr.pose().last().pose();
-                builder.vertex(matrix, rx, ry - hw, 0)
+            for (int col = firstColumn; col < width; col++) {
+                float l = x + col;
+                float r = l + 1;
+                float t = columnTop[col];
+                float b = columnBottom[col];
+                builder.vertex(matrix, r, t, 0)
                         .color(255, 255, 255, 255).endVertex();
-                builder.vertex(matrix, lx, ly - hw, 0)
+                builder.vertex(matrix, l, t, 0)
                         .color(255, 255, 255, 255).endVertex();
-                builder.vertex(matrix, lx, ly + hw, 0)
+                builder.vertex(matrix, l, b, 0)
                         .color(255, 255, 255, 255).endVertex();
-                builder.vertex(matrix, rx, ry + hw, 0)
+                builder.vertex(matrix, r, b, 0)
                         .color(255, 255, 255, 255).endVertex();
             }
-            tesselator.end();
-
-            builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_COLOR);
-            hw = 2;
-            for (int i = 0; i < currentHeight.size(); i++) {
-                float cx = x + 20 * i;
-                float cy = currentHeight.getFloat(i);
-                Matrix4f matrix = gr.pose().last().pose();
+            if (firstColumn < width) {
+                // the latest point
+                float hw = 2;
+                float cx = x + width;
+                float cy = latestY;
                 builder.vertex(matrix, cx + hw, cy - hw, 0)
                         .color(255, 255, 255, 255).endVertex();
                 builder.vertex(matrix, cx - hw, cy - hw, 0)
@@ -218,7 +410,7 @@ public class GuiTabStatistics extends GuiTabCore {
             }
             tesselator.end();
 
-            gr.fill(x - 16, y + height, x + 116, y + height + 1, 0xcfffffff);
+            gr.fill(x - 16, y + height, x + width + 16, y + height + 1, 0xcfffffff);
             gr.fill(x - 14, y - 6, x - 13, y + height + 3, 0xcfffffff);
 
             gr.pose().pushPose();
@@ -230,57 +422,74 @@ public class GuiTabStatistics extends GuiTabCore {
                     (x - 15) / 0.75f - mc.font.width(displayUnitY),
                     (y - 2) / 0.75f, 0xffffff, true);
             gr.drawString(mc.font, displayUnitX,
-                    ((x + 118) / 0.75f - mc.font.width(displayUnitX)),
+                    ((x + width + 18) / 0.75f - mc.font.width(displayUnitX)),
                     (y + height + 1.5f) / 0.75f, 0xffffff, true);
-            for (int i = 0; i < data.size(); i++) {
-                String d = FluxUtils.compact(data.getLong(i));
-                gr.drawString(mc.font, d,
-                        ((x + 20 * i) / 0.75f) - (mc.font.width(d) * 0.5f),
-                        (currentHeight.getFloat(i) - 8) / 0.75f, 0xffffff, true);
-                String c = String.valueOf((5 - i) * 5);
+            if (firstColumn < width) {
+                gr.drawString(mc.font, latestLabel,
+                        ((x + width) / 0.75f) - (mc.font.width(latestLabel) * 0.5f),
+                        (latestY - 8) / 0.75f, 0xffffff, true);
+            }
+            for (int i = 0; i < LABEL_COUNT; i++) {
+                String c = labelsX[i];
                 gr.drawString(mc.font, c,
-                        ((x + 20 * i) / 0.75f) - (mc.font.width(c) * 0.5f),
+                        ((x + (float) width * i / (LABEL_COUNT - 1)) / 0.75f) - (mc.font.width(c) * 0.5f),
                         (y + height + 2) / 0.75f, 0xffffff, true);
             }
             gr.pose().popPose();
-
-            updateHeight(deltaTicks);
-        }
-
-        public void updateData(LongList newData) {
-            this.data = newData;
-            calculateUnitY(newData);
-            calculateTargetHeight(newData);
         }
 
-        private void updateHeight(float deltaTicks) {
-            if (currentHeight.isEmpty()) {
-                return;
+        /**
+         * Compute the minimum and maximum of each pixel column, the latest sample is at the right edge.
+         */
+        private void decimate(@Nonnull ClientNetworkHistory history) {
+            final int size = history.size(resolution);
+            final int capacity = NetworkHistory.getCapacity(resolution);
+            Arrays.fill(columnMin, Long.MAX_VALUE);
+            Arrays.fill(columnMax, Long.MIN_VALUE);
+            long maxValue = 0;
+            // from the oldest to the latest
+            for (int age = size - 1; age >= 0; age--) {
+                long v = Math.max(history.get(resolution, age, channel), 0);
+                int col = getColumn(age, capacity);
+                columnMin[col] = Math.min(columnMin[col], v);
+                columnMax[col] = Math.max(columnMax[col], v);
+                columnLast[col] = v;
+                maxValue = Math.max(maxValue, v);
             }
-            for (int i = 0; i < currentHeight.size(); i++) {
-                float diff = targetHeight.getFloat(i) - currentHeight.getFloat(i);
-                if (diff == 0) {
-                    continue;
+            calculateUnitY(maxValue);
+            firstColumn = size == 0 ? width : getColumn(size - 1, capacity);
+            long prev = 0;
+            for (int col = firstColumn; col < width; col++) {
+                long lo = columnMin[col];
+                long hi = columnMax[col];
+                if (lo > hi) {
+                    // no sample in this column, hold the previous value
+                    lo = hi = columnLast[col] = prev;
                 }
-                float r;
-                float p = deltaTicks / 16;
-                if (Math.abs(diff) <= p) {
-                    r = targetHeight.getFloat(i);
-                } else {
-                    if (diff > 0)
-                        r = currentHeight.getFloat(i) + Math.max(Math.min(diff, diff / 4 * deltaTicks), p);
-                    else
-                        r = currentHeight.getFloat(i) + Math.min(Math.max(diff, diff / 4 * deltaTicks), -p);
+                if (col > firstColumn) {
+                    // connect to the previous column
+                    lo = Math.min(lo, prev);
+                    hi = Math.max(hi, prev);
                 }
-                currentHeight.set(i, r);
+                columnTop[col] = getY(hi) - HALF_WIDTH;
+                columnBottom[col] = getY(lo) + HALF_WIDTH;
+                prev = columnLast[col];
+            }
+            if (size > 0) {
+                latestY = getY(prev);
+                latestLabel = FluxUtils.compact(prev);
             }
         }
 
-        private void calculateUnitY(@Nonnull List<Long> data) {
-            long maxValue = 0;
-            for (long v : data) {
-                maxValue = Math.max(maxValue, v);
-            }
+        private int getColumn(int age, int capacity) {
+            return width - 1 - (int) ((long) age * width / capacity);
+        }
+
+        private float getY(long value) {
+            return (float) (y + height * (1 - (double) value / maxUnitY));
+        }
+
+        private void calculateUnitY(long maxValue) {
             if (maxValue <= 0) {
                 displayUnitY = "1";
                 maxUnitY = 1;
@@ -295,7 +504,7 @@ public class GuiTabStatistics extends GuiTabCore {
             } else if (exp <= 2) {
                 maxUnitY = ((maxValue / 50) + 1) * 50;
             } else {
-                int unit = 10;
+                long unit = 10;
                 for (int i = 1; i < exp; i++) {
                     unit *= 10;
                 }
@@ -304,16 +513,5 @@ public class GuiTabStatistics extends GuiTabCore {
             displayUnitY = FluxUtils.compact(maxUnitY);
             this.maxUnitY = maxUnitY;
         }
-
-        private void calculateTargetHeight(@Nonnull List<Long> data) {
-            if (data.size() != linePoints) {
-                return;
-            }
-            int i = 0;
-            for (Long value : data) {
-                targetHeight.set(i, (float) (y + height * (1 - ((double) value / maxUnitY))));
-                i++;
-            }
-        }
     }
 }
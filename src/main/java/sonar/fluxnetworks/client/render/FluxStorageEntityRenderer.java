@@ -9,6 +9,7 @@ import net.minecraft.client.renderer.blockentity.BlockEntityRendererProvider;
 import net.minecraft.core.Direction;
 import org.joml.Matrix3f;
 import org.joml.Matrix4f;
+import org.joml.Vector3f;
 import sonar.fluxnetworks.common.device.TileFluxStorage;
 
 import javax.annotation.Nonnull;
@@ -27,6 +28,18 @@ public class FluxStorageEntityRenderer implements BlockEntityRenderer<TileFluxSt
 
     private static final int ALPHA = 150;
 
+    /**
+     * The number of fill levels, fill heights are rounded up to one of them.
+     */
+    private static final int FILL_LEVELS = 128;
+    // x, y, z, u, v, normal x, y, z
+    private static final int VERTEX_STRIDE = 8;
+
+    /**
+     * Transformed quads of each fill level, lazily baked.
+     */
+    private static final float[][] sFillQuads = new float[FILL_LEVELS + 1][];
+
     private FluxStorageEntityRenderer() {
     }
 
@@ -42,52 +55,75 @@ public class FluxStorageEntityRenderer implements BlockEntityRenderer<TileFluxSt
                 packedOverlay, entity.getTransferBuffer(), entity.getMaxTransferLimit());
     }
 
+    /**
+     * Render the energy fill of a storage. The fill level is quantized, the quads of each level are
+     * transformed once and cached, so rendering only copies vertices.
+     */
     static void render(@Nonnull PoseStack poseStack, @Nonnull VertexConsumer consumer, int color,
                        int overlay, long energy, long capacity) {
         if (energy <= 0 || capacity <= 0) {
             return;
         }
-        float renderHeight = Math.min(HEIGHT * energy / capacity, HEIGHT);
+        // at least one level if there's any energy
+        int level = (int) Math.min(Math.ceil((double) energy / capacity * FILL_LEVELS), FILL_LEVELS);
+        float[] quads = sFillQuads[level];
+        if (quads == null) {
+            sFillQuads[level] = quads = bakeFill(level);
+        }
 
         int r = color >> 16 & 0xFF;
         int g = color >> 8 & 0xFF;
         int b = color & 0xFF;
 
-        renderSide(poseStack, consumer, Direction.NORTH, START, OFFSET, END, WIDTH, renderHeight, r, g, b,
-                overlay, -1);
-        renderSide(poseStack, consumer, Direction.SOUTH, START, OFFSET, END, WIDTH, renderHeight, r, g, b,
-                overlay, -1);
-        renderSide(poseStack, consumer, Direction.EAST, START, OFFSET, END, WIDTH, renderHeight, r, g, b,
-                overlay, -1);
-        renderSide(poseStack, consumer, Direction.WEST, START, OFFSET, END, WIDTH, renderHeight, r, g, b,
-                overlay, -1);
-        if (renderHeight < HEIGHT) {
-            renderSide(poseStack, consumer, Direction.UP, OFFSET, START + renderHeight, OFFSET,
-                    END, -END, r, g, b, overlay, 1);
+        Matrix4f pose = poseStack.last().pose();
+        Matrix3f normal = poseStack.last().normal();
+        for (int i = 0; i < quads.length; i += VERTEX_STRIDE) {
+            consumer.vertex(pose, quads[i], quads[i + 1], quads[i + 2]).color(r, g, b, ALPHA)
+                    .uv(quads[i + 3], quads[i + 4]).overlayCoords(overlay).uv2(LightTexture.FULL_BRIGHT)
+                    .normal(normal, quads[i + 5], quads[i + 6], quads[i + 7]).endVertex();
         }
     }
 
-    private static void renderSide(@Nonnull PoseStack stack, @Nonnull VertexConsumer consumer, @Nonnull Direction dir,
-                                   float x, float y, float z, float width, float height,
-                                   int r, int g, int b, int overlay, int normalY) {
-        stack.pushPose();
-        stack.translate(0.5, 0.5, 0.5);
-        stack.mulPose(dir.getRotation());
-        stack.translate(-0.5, -0.5, -0.5);
-        Matrix4f pose = stack.last().pose();
-        Matrix3f normal = stack.last().normal();
-        consumer.vertex(pose, x, y, z - height).color(r, g, b, ALPHA)
-                .uv(x, z - height).overlayCoords(overlay).uv2(LightTexture.FULL_BRIGHT)
-                .normal(normal, 0, normalY, 0).endVertex();
-        consumer.vertex(pose, x + width, y, z - height).color(r, g, b, ALPHA)
-                .uv(x + width, z - height).overlayCoords(overlay).uv2(LightTexture.FULL_BRIGHT)
-                .normal(normal, 0, normalY, 0).endVertex();
-        consumer.vertex(pose, x + width, y, z).color(r, g, b, ALPHA)
-                .uv(x + width, z).overlayCoords(overlay).uv2(LightTexture.FULL_BRIGHT)
-                .normal(normal, 0, normalY, 0).endVertex();
-        consumer.vertex(pose, x, y, z).color(r, g, b, ALPHA)
-                .uv(x, z).overlayCoords(overlay).uv2(LightTexture.FULL_BRIGHT)
-                .normal(normal, 0, normalY, 0).endVertex();
-        stack.popPose();
+    @Nonnull
+    private static float[] bakeFill(int level) {
+        float renderHeight = HEIGHT * level / FILL_LEVELS;
+        boolean top = level < FILL_LEVELS;
+        float[] quads = new float[(top ? 5 : 4) * 4 * VERTEX_STRIDE];
+        int index = bakeSide(quads, 0, Direction.NORTH, START, OFFSET, END, WIDTH, renderHeight, -1);
+        index = bakeSide(quads, index, Direction.SOUTH, START, OFFSET, END, WIDTH, renderHeight, -1);
+        index = bakeSide(quads, index, Direction.EAST, START, OFFSET, END, WIDTH, renderHeight, -1);
+        index = bakeSide(quads, index, Direction.WEST, START, OFFSET, END, WIDTH, renderHeight, -1);
+        if (top) {
+            bakeSide(quads, index, Direction.UP, OFFSET, START + renderHeight, OFFSET, END, -END, 1);
+        }
+        return quads;
+    }
+
+    private static int bakeSide(@Nonnull float[] quads, int index, @Nonnull Direction dir,
+                                float x, float y, float z, float width, float height, int normalY) {
+        Matrix4f pose = new Matrix4f()
+                .translate(0.5f, 0.5f, 0.5f)
+                .rotate(dir.getRotation())
+                .translate(-0.5f, -0.5f, -0.5f);
+        Vector3f normal = dir.getRotation().transform(new Vector3f(0, normalY, 0));
+        index = bakeVertex(quads, index, pose, normal, x, y, z - height);
+        index = bakeVertex(quads, index, pose, normal, x + width, y, z - height);
+        index = bakeVertex(quads, index, pose, normal, x + width, y, z);
+        return bakeVertex(quads, index, pose, normal, x, y, z);
+    }
+
+    // texture coordinates are the same as the untransformed position
+    private static int bakeVertex(@Nonnull float[] quads, int index, @Nonnull Matrix4f pose,
+                                  @Nonnull Vector3f normal, float x, float y, float z) {
+        Vector3f pos = pose.transformPosition(new Vector3f(x, y, z));
+        quads[index] = pos.x;
+        quads[index + 1] = pos.y;
+        quads[index + 2] = pos.z;
+        quads[index + 3] = x;
+        quads[index + 4] = z;
+        quads[index + 5] = normal.x;
+        quads[index + 6] = normal.y;
+        quads[index + 7] = normal.z;
+        return index + VERTEX_STRIDE;
     }
 }
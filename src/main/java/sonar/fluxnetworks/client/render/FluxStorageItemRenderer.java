@@ -7,6 +7,7 @@ import net.minecraft.client.renderer.*;
 import net.minecraft.client.renderer.block.BlockRenderDispatcher;
 import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
 import net.minecraft.world.item.ItemDisplayContext;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.Block;
@@ -22,11 +23,26 @@ import sonar.fluxnetworks.common.util.FluxUtils;
 
 import javax.annotation.Nonnull;
 
+/**
+ * Renders flux storage items with the energy fill.
+ * <p>
+ * Render states are cached by the identity of the stack's tag, so items in inventories don't
+ * read NBT or look up networks every frame. Item tags are replaced rather than modified when
+ * they changed, from either network sync or {@code TileFluxStorage#writeToDisplayStack}.
+ */
 @OnlyIn(Dist.CLIENT)
 public class FluxStorageItemRenderer extends BlockEntityWithoutLevelRenderer {
 
+    // direct mapped, power of two
+    private static final int CACHE_SIZE = 256;
+
+    private final RenderState[] mCache = new RenderState[CACHE_SIZE];
+
     public FluxStorageItemRenderer() {
         super(Minecraft.getInstance().getBlockEntityRenderDispatcher(), Minecraft.getInstance().getEntityModels());
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            mCache[i] = new RenderState();
+        }
     }
 
     @Override
@@ -37,7 +53,11 @@ public class FluxStorageItemRenderer extends BlockEntityWithoutLevelRenderer {
         long energy;
         CompoundTag rootTag = stack.getTag();
         if (rootTag != null) {
-            if (rootTag.getBoolean(FluxConstants.FLUX_COLOR)) {
+            RenderState state = mCache[System.identityHashCode(rootTag) & (CACHE_SIZE - 1)];
+            if (state.mTag != rootTag) {
+                state.update(rootTag);
+            }
+            if (state.mGuiColor) {
                 // GUI display
                 Screen screen = Minecraft.getInstance().screen;
                 if (screen instanceof GuiFluxCore gui) {
@@ -45,28 +65,10 @@ public class FluxStorageItemRenderer extends BlockEntityWithoutLevelRenderer {
                 } else {
                     color = FluxConstants.INVALID_NETWORK_COLOR;
                 }
-                CompoundTag tag = stack.getTagElement(FluxConstants.TAG_FLUX_DATA);
-                if (tag != null) {
-                    energy = tag.getLong(FluxConstants.ENERGY);
-                } else {
-                    energy = 0;
-                }
             } else {
-                CompoundTag tag = stack.getTagElement(FluxConstants.TAG_FLUX_DATA);
-                if (tag != null) {
-                    if (tag.contains(FluxConstants.CLIENT_COLOR)) {
-                        // TheOneProbe
-                        color = tag.getInt(FluxConstants.CLIENT_COLOR);
-                    } else {
-                        // ItemStack inventory
-                        color = ClientCache.getNetwork(tag.getInt(FluxConstants.NETWORK_ID)).getNetworkColor();
-                    }
-                    energy = tag.getLong(FluxConstants.ENERGY);
-                } else {
-                    color = FluxConstants.INVALID_NETWORK_COLOR;
-                    energy = 0;
-                }
+                color = state.getColor();
             }
+            energy = state.mEnergy;
         } else {
             color = FluxConstants.INVALID_NETWORK_COLOR;
             energy = 0;
@@ -85,4 +87,55 @@ public class FluxStorageItemRenderer extends BlockEntityWithoutLevelRenderer {
         FluxStorageEntityRenderer.render(poseStack, bufferSource.getBuffer(FluxStorageRenderType.getType()),
                 color, packedOverlay, energy, block.getEnergyCapacity());
     }
+
+    private static class RenderState {
+
+        // the identity of the root tag, strongly referenced as the cache is bounded
+        private CompoundTag mTag;
+
+        private boolean mGuiColor;
+        // true to resolve mColor from network mNetworkID, false if the color is from tag
+        private boolean mNetworkColor;
+        private int mNetworkID;
+        private int mColor;
+        // the revision of ClientCache when mColor was resolved
+        private int mRevision;
+        private long mEnergy;
+
+        void update(@Nonnull CompoundTag rootTag) {
+            mTag = rootTag;
+            mGuiColor = rootTag.getBoolean(FluxConstants.FLUX_COLOR);
+            CompoundTag tag = rootTag.contains(FluxConstants.TAG_FLUX_DATA, Tag.TAG_COMPOUND) ?
+                    rootTag.getCompound(FluxConstants.TAG_FLUX_DATA) : null;
+            if (tag != null) {
+                if (tag.contains(FluxConstants.CLIENT_COLOR)) {
+                    // TheOneProbe
+                    mColor = tag.getInt(FluxConstants.CLIENT_COLOR);
+                    mNetworkColor = false;
+                } else {
+                    // ItemStack inventory
+                    mNetworkID = tag.getInt(FluxConstants.NETWORK_ID);
+                    mColor = ClientCache.getNetwork(mNetworkID).getNetworkColor();
+                    mRevision = ClientCache.getRevision();
+                    mNetworkColor = true;
+                }
+                mEnergy = tag.getLong(FluxConstants.ENERGY);
+            } else {
+                mColor = FluxConstants.INVALID_NETWORK_COLOR;
+                mNetworkColor = false;
+                mEnergy = 0;
+            }
+        }
+
+        int getColor() {
+            if (mNetworkColor) {
+                int revision = ClientCache.getRevision();
+                if (mRevision != revision) {
+                    mColor = ClientCache.getNetwork(mNetworkID).getNetworkColor();
+                    mRevision = revision;
+                }
+            }
+            return mColor;
+        }
+    }
 }
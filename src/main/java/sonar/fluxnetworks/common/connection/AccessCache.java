@@ -0,0 +1,88 @@
+package sonar.fluxnetworks.common.connection;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.world.entity.player.Player;
+import sonar.fluxnetworks.api.network.AccessLevel;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Cached access levels of players to networks, including super admin, server only.
+ * <p>
+ * A decision is cached until the network's members, owner, security level or password change,
+ * or the player's super admin is toggled, or the player logs out. Decisions with a password
+ * are not cached, see {@link ServerFluxNetwork#canPlayerAccess(Player, String)}.
+ */
+public final class AccessCache {
+
+    private final HashMap<UUID, Int2ObjectOpenHashMap<AccessLevel>> mCache = new HashMap<>();
+
+    private long mHits;
+    private long mMisses;
+
+    AccessCache() {
+    }
+
+    @Nonnull
+    AccessLevel get(@Nonnull Player player, @Nonnull ServerFluxNetwork network) {
+        final UUID uuid = player.getUUID();
+        Int2ObjectOpenHashMap<AccessLevel> levels = mCache.get(uuid);
+        if (levels == null) {
+            levels = new Int2ObjectOpenHashMap<>();
+            mCache.put(uuid, levels);
+        }
+        AccessLevel access = levels.get(network.getNetworkID());
+        if (access != null) {
+            mHits++;
+            return access;
+        }
+        mMisses++;
+        access = network.computePlayerAccess(player);
+        levels.put(network.getNetworkID(), access);
+        return access;
+    }
+
+    /**
+     * Call this when the player's super admin is toggled, or the player logs out.
+     */
+    public void invalidatePlayer(@Nonnull UUID uuid) {
+        mCache.remove(uuid);
+    }
+
+    /**
+     * Call this when the network's members, owner, security level or password change.
+     */
+    public void invalidateNetwork(int networkID) {
+        for (var levels : mCache.values()) {
+            levels.remove(networkID);
+        }
+    }
+
+    /**
+     * Call this when the super admin settings change.
+     */
+    public void invalidateAll() {
+        mCache.clear();
+    }
+
+    public long getHits() {
+        return mHits;
+    }
+
+    public long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return the number of cached decisions
+     */
+    public int size() {
+        int size = 0;
+        for (var levels : mCache.values()) {
+            size += levels.size();
+        }
+        return size;
+    }
+}
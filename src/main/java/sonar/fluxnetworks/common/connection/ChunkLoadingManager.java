@@ -0,0 +1,386 @@
+package sonar.fluxnetworks.common.connection;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.GlobalPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import sonar.fluxnetworks.FluxConfig;
+import sonar.fluxnetworks.FluxNetworks;
+import sonar.fluxnetworks.api.FluxConstants;
+import sonar.fluxnetworks.common.device.TileFluxDevice;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Manage chunks force-loaded by flux devices, server only.
+ * <p>
+ * Each device that wants to load its chunk is a loader. Loaders are reference-counted per chunk,
+ * so a chunk has only one ticket no matter how many devices are in it. Ticket changes are
+ * batched and applied once per server tick, toggling a device off and on again in the same tick
+ * doesn't touch the ticket at all. Loaders are saved with the network data, and all chunks are
+ * loaded again in a batch when the server starts.
+ * <p>
+ * The number of chunks loaded by each network and each owner is tracked, and capped by
+ * {@link FluxConfig#maximumChunksPerNetwork} and {@link FluxConfig#maximumChunksPerPlayer}.
+ */
+public final class ChunkLoadingManager {
+
+    /**
+     * Tickets are not persistent, they are restored from network data.
+     */
+    private static final TicketType<ChunkPos> TICKET_TYPE =
+            TicketType.create(FluxNetworks.MODID + ":chunk_loading", Comparator.comparingLong(ChunkPos::toLong));
+
+    // level = 33 - distance = 31, block entities, entities and all game logic will run
+    private static final int LOAD_DISTANCE = 2;
+
+    private static final String DIMENSION = "dim";
+    private static final String POS = "pos";
+
+    private final HashMap<ResourceKey<Level>, Long2ObjectOpenHashMap<LoadedChunk>> mChunks = new HashMap<>();
+    private final Int2IntOpenHashMap mNetworkChunks = new Int2IntOpenHashMap();
+    private final Object2IntOpenHashMap<UUID> mOwnerChunks = new Object2IntOpenHashMap<>();
+
+    /**
+     * Chunks whose loaders changed since the last {@link #flush(MinecraftServer)}.
+     */
+    private final ObjectLinkedOpenHashSet<LoadedChunk> mDirtyChunks = new ObjectLinkedOpenHashSet<>();
+
+    ChunkLoadingManager() {
+    }
+
+    /**
+     * Add a device as a chunk loader, or update its network and owner if it's already a loader.
+     *
+     * @param device the device
+     * @return true if the device is a loader, false if it would exceed the limits
+     */
+    public boolean addLoader(@Nonnull TileFluxDevice device) {
+        final GlobalPos pos = device.getGlobalPos();
+        final long chunkPos = ChunkPos.asLong(pos.pos());
+        final Long2ObjectOpenHashMap<LoadedChunk> chunks =
+                mChunks.computeIfAbsent(pos.dimension(), __ -> new Long2ObjectOpenHashMap<>());
+        LoadedChunk chunk = chunks.get(chunkPos);
+        final Loader loader = new Loader(pos.pos().asLong(), device.getNetworkID(), device.getOwnerUUID());
+        Loader old = null;
+        if (chunk != null) {
+            old = chunk.remove(loader.pos);
+        }
+        // only a chunk that is new to the network or owner counts against the limits
+        final boolean newToNetwork = (chunk == null || !chunk.hasNetwork(loader.networkID)) &&
+                (old == null || old.networkID != loader.networkID);
+        final boolean newToOwner = (chunk == null || !chunk.hasOwner(loader.owner)) &&
+                (old == null || !old.owner.equals(loader.owner));
+        if (newToNetwork && exceeds(FluxConfig.maximumChunksPerNetwork, mNetworkChunks.get(loader.networkID)) ||
+                newToOwner && exceeds(FluxConfig.maximumChunksPerPlayer, mOwnerChunks.getInt(loader.owner))) {
+            if (old != null) {
+                // put it back, it stays a loader as before
+                chunk.mLoaders.add(old);
+            }
+            return false;
+        }
+        if (old != null) {
+            onRemoved(chunk, old);
+        }
+        if (chunk == null) {
+            chunk = new LoadedChunk(pos.dimension(), chunkPos);
+            chunks.put(chunkPos, chunk);
+        }
+        add(chunk, loader);
+        return true;
+    }
+
+    private static boolean exceeds(int max, int count) {
+        return max != -1 && count >= max;
+    }
+
+    /**
+     * Remove a device from chunk loaders.
+     *
+     * @param device the device
+     */
+    public void removeLoader(@Nonnull TileFluxDevice device) {
+        final GlobalPos pos = device.getGlobalPos();
+        final Long2ObjectOpenHashMap<LoadedChunk> chunks = mChunks.get(pos.dimension());
+        if (chunks == null) {
+            return;
+        }
+        final LoadedChunk chunk = chunks.get(ChunkPos.asLong(pos.pos()));
+        if (chunk != null) {
+            Loader loader = chunk.remove(pos.pos().asLong());
+            if (loader != null) {
+                onRemoved(chunk, loader);
+            }
+        }
+    }
+
+    public boolean isLoader(@Nonnull TileFluxDevice device) {
+        final GlobalPos pos = device.getGlobalPos();
+        final Long2ObjectOpenHashMap<LoadedChunk> chunks = mChunks.get(pos.dimension());
+        if (chunks == null) {
+            return false;
+        }
+        final LoadedChunk chunk = chunks.get(ChunkPos.asLong(pos.pos()));
+        return chunk != null && chunk.get(pos.pos().asLong()) != null;
+    }
+
+    private void add(@Nonnull LoadedChunk chunk, @Nonnull Loader loader) {
+        if (!chunk.hasNetwork(loader.networkID)) {
+            mNetworkChunks.addTo(loader.networkID, 1);
+        }
+        if (!chunk.hasOwner(loader.owner)) {
+            mOwnerChunks.addTo(loader.owner, 1);
+        }
+        chunk.mLoaders.add(loader);
+        mDirtyChunks.add(chunk);
+    }
+
+    // the loader has already been removed from the chunk
+    private void onRemoved(@Nonnull LoadedChunk chunk, @Nonnull Loader loader) {
+        if (!chunk.hasNetwork(loader.networkID) && mNetworkChunks.addTo(loader.networkID, -1) <= 1) {
+            mNetworkChunks.remove(loader.networkID);
+        }
+        if (!chunk.hasOwner(loader.owner) && mOwnerChunks.addTo(loader.owner, -1) <= 1) {
+            mOwnerChunks.removeInt(loader.owner);
+        }
+        mDirtyChunks.add(chunk);
+    }
+
+    /**
+     * Apply ticket changes of this tick, called at the end of a server tick.
+     *
+     * @param server the server
+     */
+    void flush(@Nonnull MinecraftServer server) {
+        while (!mDirtyChunks.isEmpty()) {
+            final LoadedChunk chunk = mDirtyChunks.removeFirst();
+            final boolean load = !chunk.mLoaders.isEmpty();
+            if (load != chunk.mTicket) {
+                ServerLevel level = server.getLevel(chunk.mDimension);
+                if (level != null) {
+                    setTicket(level, chunk.mPos, load);
+                    chunk.mTicket = load;
+                }
+            }
+            if (!load && !chunk.mTicket) {
+                final Long2ObjectOpenHashMap<LoadedChunk> chunks = mChunks.get(chunk.mDimension);
+                chunks.remove(chunk.mPos);
+                if (chunks.isEmpty()) {
+                    mChunks.remove(chunk.mDimension);
+                }
+            }
+        }
+    }
+
+    private static void setTicket(@Nonnull ServerLevel level, long chunkPos, boolean load) {
+        final ChunkPos pos = new ChunkPos(chunkPos);
+        if (load) {
+            level.getChunkSource().addRegionTicket(TICKET_TYPE, pos, LOAD_DISTANCE, pos, true);
+        } else {
+            level.getChunkSource().removeRegionTicket(TICKET_TYPE, pos, LOAD_DISTANCE, pos, true);
+        }
+    }
+
+    /**
+     * Load all chunks of saved loaders in a batch, called when the server started.
+     * Loaders that are no longer flux devices are removed.
+     *
+     * @param server the server
+     */
+    void restore(@Nonnull MinecraftServer server) {
+        if (!FluxConfig.enableChunkLoading) {
+            if (!mChunks.isEmpty()) {
+                FluxNetworks.LOGGER.info("Removed all chunk loaders because chunk loading is disabled");
+            }
+            clear();
+            return;
+        }
+        for (var dimension : new ArrayList<>(mChunks.entrySet())) {
+            final ServerLevel level = server.getLevel(dimension.getKey());
+            if (level == null) {
+                // keep them, the dimension may come back
+                continue;
+            }
+            int devices = 0;
+            for (LoadedChunk chunk : new ArrayList<>(dimension.getValue().values())) {
+                final ChunkPos pos = new ChunkPos(chunk.mPos);
+                setTicket(level, chunk.mPos, true);
+                chunk.mTicket = true;
+                // load the chunk now to validate loaders
+                level.getChunk(pos.x, pos.z);
+                for (int i = chunk.mLoaders.size() - 1; i >= 0; i--) {
+                    final Loader loader = chunk.mLoaders.get(i);
+                    if (level.getBlockEntity(BlockPos.of(loader.pos)) instanceof TileFluxDevice device) {
+                        device.setForcedLoading(true);
+                        devices++;
+                    } else {
+                        chunk.mLoaders.remove(i);
+                        onRemoved(chunk, loader);
+                    }
+                }
+            }
+            FluxNetworks.LOGGER.info("Load {} chunks by {} flux devices in {}",
+                    dimension.getValue().size(), devices, dimension.getKey().location());
+        }
+        flush(server);
+    }
+
+    private void clear() {
+        mChunks.clear();
+        mNetworkChunks.clear();
+        mOwnerChunks.clear();
+        mDirtyChunks.clear();
+    }
+
+    /**
+     * @return the number of force-loaded chunks
+     */
+    public int getChunkCount() {
+        int count = 0;
+        for (var chunks : mChunks.values()) {
+            for (LoadedChunk chunk : chunks.values()) {
+                if (!chunk.mLoaders.isEmpty()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param networkID the network ID
+     * @return the number of chunks force-loaded by devices of the network
+     */
+    public int getNetworkChunks(int networkID) {
+        return mNetworkChunks.get(networkID);
+    }
+
+    /**
+     * @param owner the owner UUID
+     * @return the number of chunks force-loaded by devices of the player
+     */
+    public int getOwnerChunks(@Nonnull UUID owner) {
+        return mOwnerChunks.getInt(owner);
+    }
+
+    @Nonnull
+    public Int2IntMap getAllNetworkChunks() {
+        return mNetworkChunks;
+    }
+
+    @Nonnull
+    public Object2IntMap<UUID> getAllOwnerChunks() {
+        return mOwnerChunks;
+    }
+
+    void writeNBT(@Nonnull ListTag list) {
+        for (var dimension : mChunks.entrySet()) {
+            final String key = dimension.getKey().location().toString();
+            for (LoadedChunk chunk : dimension.getValue().values()) {
+                for (Loader loader : chunk.mLoaders) {
+                    CompoundTag tag = new CompoundTag();
+                    tag.putString(DIMENSION, key);
+                    tag.putLong(POS, loader.pos);
+                    tag.putInt(FluxConstants.NETWORK_ID, loader.networkID);
+                    tag.putUUID(FluxConstants.PLAYER_UUID, loader.owner);
+                    list.add(tag);
+                }
+            }
+        }
+    }
+
+    void readNBT(@Nonnull ListTag list) {
+        clear();
+        for (int i = 0; i < list.size(); i++) {
+            CompoundTag tag = list.getCompound(i);
+            ResourceLocation location = ResourceLocation.tryParse(tag.getString(DIMENSION));
+            if (location == null || !tag.hasUUID(FluxConstants.PLAYER_UUID)) {
+                continue;
+            }
+            ResourceKey<Level> dimension = ResourceKey.create(Registries.DIMENSION, location);
+            Loader loader = new Loader(tag.getLong(POS), tag.getInt(FluxConstants.NETWORK_ID),
+                    tag.getUUID(FluxConstants.PLAYER_UUID));
+            long chunkPos = ChunkPos.asLong(BlockPos.of(loader.pos));
+            LoadedChunk chunk = mChunks.computeIfAbsent(dimension, __ -> new Long2ObjectOpenHashMap<>())
+                    .computeIfAbsent(chunkPos, __ -> new LoadedChunk(dimension, chunkPos));
+            if (chunk.get(loader.pos) == null) {
+                add(chunk, loader);
+            }
+        }
+        // tickets are added in restore()
+        mDirtyChunks.clear();
+    }
+
+    private record Loader(long pos, int networkID, UUID owner) {
+    }
+
+    /**
+     * Loaders in a chunk, usually only one or a few, so they are just a list.
+     */
+    private static final class LoadedChunk {
+
+        final ResourceKey<Level> mDimension;
+        final long mPos;
+        final ArrayList<Loader> mLoaders = new ArrayList<>(2);
+        boolean mTicket;
+
+        LoadedChunk(ResourceKey<Level> dimension, long pos) {
+            mDimension = dimension;
+            mPos = pos;
+        }
+
+        Loader get(long pos) {
+            for (Loader loader : mLoaders) {
+                if (loader.pos == pos) {
+                    return loader;
+                }
+            }
+            return null;
+        }
+
+        Loader remove(long pos) {
+            for (int i = 0; i < mLoaders.size(); i++) {
+                if (mLoaders.get(i).pos == pos) {
+                    return mLoaders.remove(i);
+                }
+            }
+            return null;
+        }
+
+        boolean hasNetwork(int networkID) {
+            for (Loader loader : mLoaders) {
+                if (loader.networkID == networkID) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean hasOwner(UUID owner) {
+            for (Loader loader : mLoaders) {
+                if (loader.owner.equals(owner)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,18 +1,25 @@
 package sonar.fluxnetworks.common.connection;
 
+import net.minecraft.core.GlobalPos;
 import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import sonar.fluxnetworks.api.device.IFluxDevice;
 import sonar.fluxnetworks.api.network.AccessLevel;
+import sonar.fluxnetworks.api.network.NetworkMember;
 import sonar.fluxnetworks.client.ClientCache;
 import sonar.fluxnetworks.common.device.TileFluxDevice;
 
 import javax.annotation.Nonnull;
+import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 @OnlyIn(Dist.CLIENT)
 public class ClientFluxNetwork extends FluxNetwork {
 
+    private final ClientNetworkHistory mHistory = new ClientNetworkHistory();
+
     public ClientFluxNetwork(int ignored) {
     }
 
@@ -42,6 +49,46 @@ public class ClientFluxNetwork extends FluxNetwork {
         throw new IllegalStateException();
     }
 
+    /**
+     * Returns the streamed statistics history, which is empty until the statistics tab requests it.
+     *
+     * @return the history
+     */
+    @Nonnull
+    public ClientNetworkHistory getClientHistory() {
+        return mHistory;
+    }
+
+    /**
+     * Replace all members with the ones decoded off the main thread.
+     *
+     * @param members the new members, owned by this network from now on
+     */
+    public void setMembers(@Nonnull HashMap<UUID, NetworkMember> members) {
+        mMemberMap = members;
+    }
+
+    /**
+     * Replace all connections with the ones decoded off the main thread.
+     *
+     * @param connections the new connections, owned by this network from now on
+     */
+    public void setConnections(@Nonnull HashMap<GlobalPos, IFluxDevice> connections) {
+        mConnectionMap = connections;
+    }
+
+    /**
+     * Release members, connections and detailed statistics, they are requested again when viewed.
+     * Basic data is kept.
+     */
+    public void releaseDetails() {
+        mMemberMap.clear();
+        mConnectionMap.clear();
+        mStatistics.topThroughput.clear();
+        mStatistics.topStarved.clear();
+        mHistory.clear();
+    }
+
     @Override
     public boolean isValid() {
         return true;
@@ -0,0 +1,123 @@
+package sonar.fluxnetworks.common.connection;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+
+import static sonar.fluxnetworks.common.connection.NetworkHistory.CHANNEL_COUNT;
+import static sonar.fluxnetworks.common.connection.NetworkHistory.RESOLUTION_COUNT;
+
+/**
+ * The client-side mirror of {@link NetworkHistory}, filled by streamed samples.
+ * <p>
+ * Each resolution has a ring of the same capacity as the server's, and a sequence number of
+ * the next sample. The client requests samples since its sequence number, so only new samples
+ * are sent. Samples already appended by an earlier response are skipped. If the server's samples
+ * don't continue the ring, e.g. the client fell behind by more than the capacity, the ring is reset.
+ */
+@OnlyIn(Dist.CLIENT)
+public class ClientNetworkHistory {
+
+    private final long[][] mData = new long[RESOLUTION_COUNT][];
+    private final int[] mHead = new int[RESOLUTION_COUNT];
+    private final int[] mSize = new int[RESOLUTION_COUNT];
+    private final long[] mCount = new long[RESOLUTION_COUNT];
+    // the number of responses, including empty ones
+    private final int[] mReceived = new int[RESOLUTION_COUNT];
+
+    /**
+     * Incremented when any samples are changed.
+     */
+    private int mRevision;
+
+    public ClientNetworkHistory() {
+        for (int i = 0; i < RESOLUTION_COUNT; i++) {
+            mData[i] = new long[NetworkHistory.getCapacity(i) * CHANNEL_COUNT];
+        }
+    }
+
+    /**
+     * Append streamed samples.
+     *
+     * @param resolution the resolution, e.g. {@link NetworkHistory#SECONDS}
+     * @param start      the sequence number of the first sample
+     * @param samples    samples from the oldest to the latest, channels are interleaved
+     * @param n          the number of samples
+     */
+    public void append(int resolution, long start, @Nonnull long[] samples, int n) {
+        mReceived[resolution]++;
+        final long[] data = mData[resolution];
+        final int capacity = NetworkHistory.getCapacity(resolution);
+        final long count = mCount[resolution];
+        int skip = 0;
+        if (start > count || start + n < count) {
+            // not continuous, or the server's samples went back
+            mHead[resolution] = 0;
+            mSize[resolution] = 0;
+        } else {
+            // overlapped with samples of an earlier response, e.g. requests crossed
+            skip = (int) (count - start);
+            if (skip == n) {
+                return;
+            }
+        }
+        int head = mHead[resolution];
+        for (int i = skip; i < n; i++) {
+            System.arraycopy(samples, i * CHANNEL_COUNT, data, head * CHANNEL_COUNT, CHANNEL_COUNT);
+            head = (head + 1) % capacity;
+        }
+        mHead[resolution] = head;
+        mSize[resolution] = Math.min(mSize[resolution] + n - skip, capacity);
+        mCount[resolution] = start + n;
+        mRevision++;
+    }
+
+    public void clear() {
+        for (int i = 0; i < RESOLUTION_COUNT; i++) {
+            mHead[i] = 0;
+            mSize[i] = 0;
+            mCount[i] = 0;
+        }
+        mRevision++;
+    }
+
+    /**
+     * @return the sequence number of the next sample, to request samples since
+     */
+    public long getCount(int resolution) {
+        return mCount[resolution];
+    }
+
+    /**
+     * @return the number of responses received, to tell whether a request is answered
+     */
+    public int getReceived(int resolution) {
+        return mReceived[resolution];
+    }
+
+    public int size(int resolution) {
+        return mSize[resolution];
+    }
+
+    /**
+     * Get a sample value.
+     *
+     * @param resolution the resolution, e.g. {@link NetworkHistory#SECONDS}
+     * @param age        0 is the latest sample, must be less than {@link #size(int)}
+     * @param channel    the channel, e.g. {@link NetworkHistory#INPUT}
+     * @return the value
+     */
+    public long get(int resolution, int age, int channel) {
+        assert age >= 0 && age < mSize[resolution];
+        int slot = mHead[resolution] - 1 - age;
+        if (slot < 0) {
+            slot += NetworkHistory.getCapacity(resolution);
+        }
+        return mData[resolution][slot * CHANNEL_COUNT + channel];
+    }
+
+    public int getRevision() {
+        return mRevision;
+    }
+}
@@ -0,0 +1,201 @@
+package sonar.fluxnetworks.common.connection;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.GlobalPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import sonar.fluxnetworks.api.FluxConstants;
+import sonar.fluxnetworks.common.device.TileFluxDevice;
+import sonar.fluxnetworks.common.util.FluxUtils;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cumulative energy accounting of each logical device in a network, server only.
+ * <p>
+ * Counters are stored in primitive arrays, indexed by a slot that is allocated when the device
+ * joins the network and released when it leaves.
+ *
+ * @see TransferHandler#mCounterSlot
+ */
+public class DeviceCounters {
+
+    /**
+     * Metrics to rank devices.
+     */
+    public static final int
+            SORT_THROUGHPUT = 0,
+            SORT_STARVED = 1,
+            SORT_LIMITED = 2;
+
+    private TileFluxDevice[] mDevices = new TileFluxDevice[16];
+    private long[] mEnergyIn = new long[16];
+    private long[] mEnergyOut = new long[16];
+    private long[] mStarvedTicks = new long[16];
+    private long[] mLimitedTicks = new long[16];
+
+    /**
+     * Slot lookup when a device leaves. The handler's slot may already be reassigned by
+     * the new network, because networks handle their connection queues independently.
+     */
+    private final Reference2IntOpenHashMap<TileFluxDevice> mSlots = new Reference2IntOpenHashMap<>();
+    private final IntArrayList mFreeSlots = new IntArrayList();
+    /**
+     * The number of slots that have ever been allocated.
+     */
+    private int mSlotCount;
+
+    DeviceCounters() {
+        mSlots.defaultReturnValue(-1);
+    }
+
+    int allocate(@Nonnull TileFluxDevice device) {
+        final int slot;
+        if (!mFreeSlots.isEmpty()) {
+            slot = mFreeSlots.popInt();
+        } else {
+            slot = mSlotCount++;
+            if (slot == mDevices.length) {
+                int length = slot << 1;
+                mDevices = Arrays.copyOf(mDevices, length);
+                mEnergyIn = Arrays.copyOf(mEnergyIn, length);
+                mEnergyOut = Arrays.copyOf(mEnergyOut, length);
+                mStarvedTicks = Arrays.copyOf(mStarvedTicks, length);
+                mLimitedTicks = Arrays.copyOf(mLimitedTicks, length);
+            }
+        }
+        mDevices[slot] = device;
+        mSlots.put(device, slot);
+        mEnergyIn[slot] = 0;
+        mEnergyOut[slot] = 0;
+        mStarvedTicks[slot] = 0;
+        mLimitedTicks[slot] = 0;
+        return slot;
+    }
+
+    void release(@Nonnull TileFluxDevice device) {
+        int slot = mSlots.removeInt(device);
+        if (slot >= 0) {
+            mDevices[slot] = null;
+            mFreeSlots.add(slot);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(mDevices, null);
+        mSlots.clear();
+        mFreeSlots.clear();
+        mSlotCount = 0;
+    }
+
+    /**
+     * Record the result of a transfer cycle.
+     *
+     * @param slot    the slot of the device
+     * @param change  the external energy change, see {@link TransferHandler#getChange()}
+     * @param starved whether the device requested more energy than the network provided
+     * @param limited whether the external transfer reached the transfer limit
+     */
+    void record(int slot, long change, boolean starved, boolean limited) {
+        if (change > 0) {
+            mEnergyIn[slot] += change;
+        } else {
+            mEnergyOut[slot] -= change;
+        }
+        if (starved) {
+            mStarvedTicks[slot]++;
+        }
+        if (limited) {
+            mLimitedTicks[slot]++;
+        }
+    }
+
+    private long getMetric(int slot, int sort) {
+        return switch (sort) {
+            case SORT_STARVED -> mStarvedTicks[slot];
+            case SORT_LIMITED -> mLimitedTicks[slot];
+            default -> mEnergyIn[slot] + mEnergyOut[slot];
+        };
+    }
+
+    /**
+     * Find the top devices by the given metric, using a bounded heap rather than a full sort.
+     *
+     * @param count the maximum number of devices
+     * @param sort  the metric, e.g. {@link #SORT_THROUGHPUT}
+     * @return entries in descending order, devices with a zero metric are excluded
+     */
+    @Nonnull
+    public List<Entry> getTop(int count, int sort) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        // the root is the minimum among the current candidates
+        final IntHeapPriorityQueue heap = new IntHeapPriorityQueue(count + 1,
+                (a, b) -> Long.compare(getMetric(a, sort), getMetric(b, sort)));
+        for (int slot = 0; slot < mSlotCount; slot++) {
+            if (mDevices[slot] == null) {
+                continue;
+            }
+            long metric = getMetric(slot, sort);
+            if (metric <= 0) {
+                continue;
+            }
+            if (heap.size() < count) {
+                heap.enqueue(slot);
+            } else if (metric > getMetric(heap.firstInt(), sort)) {
+                heap.dequeueInt();
+                heap.enqueue(slot);
+            }
+        }
+        final Entry[] entries = new Entry[heap.size()];
+        for (int i = entries.length - 1; i >= 0; i--) {
+            int slot = heap.dequeueInt();
+            TileFluxDevice device = mDevices[slot];
+            entries[i] = new Entry(device.getGlobalPos(), device.getCustomName(),
+                    mEnergyIn[slot], mEnergyOut[slot], mStarvedTicks[slot], mLimitedTicks[slot]);
+        }
+        return new ArrayList<>(Arrays.asList(entries));
+    }
+
+    /**
+     * A snapshot of the counters of a device.
+     */
+    public record Entry(GlobalPos pos, String customName,
+                        long energyIn, long energyOut, long starvedTicks, long limitedTicks) {
+
+        @Nonnull
+        public static ListTag writeList(@Nonnull List<Entry> entries) {
+            ListTag list = new ListTag();
+            for (Entry e : entries) {
+                CompoundTag tag = new CompoundTag();
+                FluxUtils.writeGlobalPos(tag, e.pos);
+                tag.putString(FluxConstants.CUSTOM_NAME, e.customName);
+                tag.putLong("in", e.energyIn);
+                tag.putLong("out", e.energyOut);
+                tag.putLong("starved", e.starvedTicks);
+                tag.putLong("limited", e.limitedTicks);
+                list.add(tag);
+            }
+            return list;
+        }
+
+        public static void readList(@Nonnull ListTag list, @Nonnull List<Entry> dst) {
+            dst.clear();
+            for (int i = 0; i < list.size(); i++) {
+                CompoundTag tag = list.getCompound(i);
+                dst.add(new Entry(FluxUtils.readGlobalPos(tag), tag.getString(FluxConstants.CUSTOM_NAME),
+                        tag.getLong("in"), tag.getLong("out"), tag.getLong("starved"), tag.getLong("limited")));
+            }
+        }
+
+        public long throughput() {
+            return energyIn + energyOut;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package sonar.fluxnetworks.common.connection;
+
+import net.minecraft.nbt.CompoundTag;
+import sonar.fluxnetworks.api.FluxConstants;
+import sonar.fluxnetworks.common.device.TileFluxDevice;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Device settings decoded from a {@link FluxConstants#NBT_TILE_SETTINGS} tag, server only.
+ * <p>
+ * The tag is read and validated once, then the settings can be applied to any number of
+ * devices. Absent or invalid settings are null and left unchanged.
+ *
+ * @see ServerFluxNetwork#applySettings(Iterable, DeviceSettings)
+ */
+public final class DeviceSettings {
+
+    @Nullable
+    private final String mCustomName;
+    @Nullable
+    private final Integer mPriority;
+    @Nullable
+    private final Long mLimit;
+    @Nullable
+    private final Boolean mSurgeMode;
+    @Nullable
+    private final Boolean mDisableLimit;
+    @Nullable
+    private final Boolean mForcedLoading;
+
+    public DeviceSettings(@Nonnull CompoundTag tag) {
+        String name = null;
+        if (tag.contains(FluxConstants.CUSTOM_NAME)) {
+            name = tag.getString(FluxConstants.CUSTOM_NAME);
+            if (name.length() > TileFluxDevice.MAX_CUSTOM_NAME_LENGTH) {
+                name = null;
+            }
+        }
+        mCustomName = name;
+        mPriority = tag.contains(FluxConstants.PRIORITY) ? tag.getInt(FluxConstants.PRIORITY) : null;
+        mLimit = tag.contains(FluxConstants.LIMIT) ? tag.getLong(FluxConstants.LIMIT) : null;
+        mSurgeMode = tag.contains(FluxConstants.SURGE_MODE) ? tag.getBoolean(FluxConstants.SURGE_MODE) : null;
+        mDisableLimit = tag.contains(FluxConstants.DISABLE_LIMIT) ?
+                tag.getBoolean(FluxConstants.DISABLE_LIMIT) : null;
+        mForcedLoading = tag.contains(FluxConstants.FORCED_LOADING) ?
+                tag.getBoolean(FluxConstants.FORCED_LOADING) : null;
+    }
+
+    private DeviceSettings(@Nullable String customName, @Nullable Integer priority, @Nullable Long limit,
+                           @Nullable Boolean surgeMode, @Nullable Boolean disableLimit,
+                           @Nullable Boolean forcedLoading) {
+        mCustomName = customName;
+        mPriority = priority;
+        mLimit = limit;
+        mSurgeMode = surgeMode;
+        mDisableLimit = disableLimit;
+        mForcedLoading = forcedLoading;
+    }
+
+    /**
+     * Merge later settings into these settings, the later one wins for each setting present in both.
+     *
+     * @param later the settings edited after these
+     * @return the merged settings, the same as applying these and then the later one
+     */
+    @Nonnull
+    public DeviceSettings merge(@Nonnull DeviceSettings later) {
+        return new DeviceSettings(
+                later.mCustomName != null ? later.mCustomName : mCustomName,
+                later.mPriority != null ? later.mPriority : mPriority,
+                later.mLimit != null ? later.mLimit : mLimit,
+                later.mSurgeMode != null ? later.mSurgeMode : mSurgeMode,
+                later.mDisableLimit != null ? later.mDisableLimit : mDisableLimit,
+                later.mForcedLoading != null ? later.mForcedLoading : mForcedLoading);
+    }
+
+    public boolean isEmpty() {
+        return mCustomName == null && mPriority == null && mLimit == null &&
+                mSurgeMode == null && mDisableLimit == null && mForcedLoading == null;
+    }
+
+    @Nullable
+    public String getCustomName() {
+        return mCustomName;
+    }
+
+    @Nullable
+    public Integer getPriority() {
+        return mPriority;
+    }
+
+    @Nullable
+    public Long getLimit() {
+        return mLimit;
+    }
+
+    @Nullable
+    public Boolean getSurgeMode() {
+        return mSurgeMode;
+    }
+
+    @Nullable
+    public Boolean getDisableLimit() {
+        return mDisableLimit;
+    }
+
+    @Nullable
+    public Boolean getForcedLoading() {
+        return mForcedLoading;
+    }
+}
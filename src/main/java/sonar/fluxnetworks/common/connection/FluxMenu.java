@@ -1,5 +1,6 @@
 package sonar.fluxnetworks.common.connection;
 
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.inventory.AbstractContainerMenu;
@@ -7,6 +8,7 @@ import net.minecraft.world.item.ItemStack;
 import sonar.fluxnetworks.api.device.IFluxProvider;
 import sonar.fluxnetworks.common.device.TileFluxDevice;
 import sonar.fluxnetworks.common.item.ItemFluxConfigurator;
+import sonar.fluxnetworks.register.MessageQueue;
 import sonar.fluxnetworks.register.RegistryItems;
 import sonar.fluxnetworks.register.RegistryMenuTypes;
 
@@ -49,6 +51,10 @@ public class FluxMenu extends AbstractContainerMenu {
     // both side
     @Override
     public void removed(@Nonnull Player player) {
+        if (player instanceof ServerPlayer p) {
+            // handle commands sent before closing while the token is still valid
+            MessageQueue.drain(p);
+        }
         super.removed(player);
         mProvider.onPlayerClosed(player);
     }
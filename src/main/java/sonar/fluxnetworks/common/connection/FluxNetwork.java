@@ -80,13 +80,16 @@ public class FluxNetwork {
     SecurityLevel mSecurityLevel;
 
     final NetworkStatistics mStatistics = new NetworkStatistics(this);
-    final HashMap<UUID, NetworkMember> mMemberMap = new HashMap<>();
+    /**
+     * Client: replaced as a whole by updates, see {@link ClientFluxNetwork#setMembers(HashMap)}
+     */
+    HashMap<UUID, NetworkMember> mMemberMap = new HashMap<>();
     /**
      * Server: {@link TileFluxDevice} (loaded) and {@link PhantomFluxDevice} (unloaded)
      * <p>
-     * Client: {@link PhantomFluxDevice} (data container)
+     * Client: {@link PhantomFluxDevice} (data container), replaced as a whole by updates
      */
-    final HashMap<GlobalPos, IFluxDevice> mConnectionMap = new HashMap<>();
+    HashMap<GlobalPos, IFluxDevice> mConnectionMap = new HashMap<>();
 
     FluxNetwork() {
         this(FluxConstants.INVALID_NETWORK_ID, "", FluxConstants.INVALID_NETWORK_COLOR,
@@ -183,6 +186,26 @@ public class FluxNetwork {
         return mStatistics;
     }
 
+    /**
+     * Returns the long-term statistics history. Server only.
+     *
+     * @return the history, or null on the client side
+     */
+    @Nullable
+    public NetworkHistory getHistory() {
+        return null;
+    }
+
+    /**
+     * Returns the energy accounting of each device. Server only.
+     *
+     * @return the counters, or null on the client side
+     */
+    @Nullable
+    public DeviceCounters getDeviceCounters() {
+        return null;
+    }
+
     @Nullable
     public NetworkMember getMemberByUUID(@Nonnull UUID uuid) {
         return mMemberMap.get(uuid);
@@ -227,6 +250,17 @@ public class FluxNetwork {
     public void onEndServerTick() {
     }
 
+    /**
+     * Returns whether non-critical work, such as statistics and wireless charging, is deferred
+     * in the current tick. Energy transfer between plugs and points is never deferred. Server only.
+     *
+     * @return {@code true} if the network is over the tick budget this tick
+     * @see NetworkTickScheduler
+     */
+    public boolean isThrottled() {
+        return false;
+    }
+
     /**
      * Called when this network is deleted from its manager.
      */
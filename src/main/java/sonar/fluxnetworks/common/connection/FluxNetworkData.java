@@ -3,6 +3,7 @@ package sonar.fluxnetworks.common.connection;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.nbt.*;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.saveddata.SavedData;
@@ -12,6 +13,7 @@ import sonar.fluxnetworks.FluxNetworks;
 import sonar.fluxnetworks.api.FluxConstants;
 import sonar.fluxnetworks.api.network.SecurityLevel;
 import sonar.fluxnetworks.common.capability.FluxPlayer;
+import sonar.fluxnetworks.common.util.FluxEvents;
 import sonar.fluxnetworks.register.Channel;
 import sonar.fluxnetworks.register.Messages;
 
@@ -19,7 +21,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.util.Collection;
-import java.util.UUID;
 
 /**
  * Manage all logical flux networks and save their data to the world.
@@ -34,7 +35,7 @@ public final class FluxNetworkData extends SavedData {
     private static volatile FluxNetworkData data;
 
     private static final String NETWORKS = "networks";
-    //private static final String TICKETS = "tickets";
+    private static final String TICKETS = "tickets";
     private static final String UNIQUE_ID = "uniqueID";
 
     /*public static String NETWORK_PASSWORD = "networkPassword";
@@ -51,10 +52,14 @@ public final class FluxNetworkData extends SavedData {
     public static String OLD_NETWORK_ACCESS = "access";*/
 
     private final Int2ObjectMap<FluxNetwork> mNetworks = new Int2ObjectOpenHashMap<>();
-    //private final Map<ResourceLocation, LongSet> tickets = new HashMap<>();
 
     private int mUniqueID = 0;
 
+    private final NetworkTickScheduler mScheduler = new NetworkTickScheduler();
+    private final ChunkLoadingManager mChunkManager = new ChunkLoadingManager();
+    private final NetworkIndex mIndex = new NetworkIndex();
+    private final AccessCache mAccessCache = new AccessCache();
+
     private FluxNetworkData() {
     }
 
@@ -91,17 +96,39 @@ public final class FluxNetworkData extends SavedData {
         return getInstance().mNetworks.values();
     }
 
-    /*
-     * Get a set of block pos with given dimension key, a pos represents a flux tile entity
-     * that wants to load the chunk it's in
-     *
-     * @param dim dimension
-     * @return all block pos that want to load chunks they are in
+    /**
+     * Query networks by owner.
      */
-    /*@Nonnull
-    public static LongSet getTickets(@Nonnull RegistryKey<World> dim) {
-        return get().tickets.computeIfAbsent(dim.getLocation(), d -> new LongOpenHashSet());
-    }*/
+    @Nonnull
+    public static NetworkIndex getIndex() {
+        return getInstance().mIndex;
+    }
+
+    @Nonnull
+    public static AccessCache getAccessCache() {
+        return getInstance().mAccessCache;
+    }
+
+    @Nonnull
+    public static ChunkLoadingManager getChunkManager() {
+        return getInstance().mChunkManager;
+    }
+
+    /**
+     * Tick all networks at the end of a server tick.
+     */
+    public static void tickNetworks() {
+        FluxNetworkData data = getInstance();
+        data.mScheduler.tick(data.mNetworks.values());
+        data.mChunkManager.flush(ServerLifecycleHooks.getCurrentServer());
+    }
+
+    /**
+     * Load chunks of all chunk loaders, called when the server started.
+     */
+    public static void restoreChunkLoaders(@Nonnull MinecraftServer server) {
+        getInstance().mChunkManager.restore(server);
+    }
 
     @Nullable
     public FluxNetwork createNetwork(@Nonnull Player creator, @Nonnull String name, int color,
@@ -111,12 +138,8 @@ public final class FluxNetworkData extends SavedData {
             if (max <= 0) {
                 return null;
             }
-            final UUID uuid = creator.getUUID();
-            int i = 0;
-            for (var n : mNetworks.values()) {
-                if (n.getOwnerUUID().equals(uuid) && ++i >= max) {
-                    return null;
-                }
+            if (mIndex.getOwnedNetworks(creator.getUUID()).size() >= max) {
+                return null;
             }
         }
         do {
@@ -126,12 +149,15 @@ public final class FluxNetworkData extends SavedData {
         final ServerFluxNetwork network = new ServerFluxNetwork(mUniqueID, name, color, security, creator, password);
 
         mNetworks.put(network.getNetworkID(), network);
+        mIndex.add(network);
         Channel.get().sendToAll(Messages.updateNetwork(network, FluxConstants.NBT_NET_BASIC));
         return network;
     }
 
     public void deleteNetwork(@Nonnull FluxNetwork network) {
         if (mNetworks.remove(network.getNetworkID()) == network) {
+            mIndex.remove(network);
+            mAccessCache.invalidateNetwork(network.getNetworkID());
             network.onDelete();
             Messages.deleteNetwork(network.getNetworkID());
         }
@@ -152,49 +178,35 @@ public final class FluxNetworkData extends SavedData {
             network.readCustomTag(list.getCompound(i), FluxConstants.NBT_SAVE_ALL);
             if (network.getNetworkID() > 0) {
                 mNetworks.put(network.getNetworkID(), network);
+                mIndex.add(network);
             }
         }
 
-        /*CompoundNBT tag = nbt.getCompound(TICKETS);
-        for (String key : tag.keySet()) {
-            ListNBT l2 = tag.getList(key, Constants.NBT.TAG_LONG);
-            LongSet set = tickets.computeIfAbsent(new ResourceLocation(key), d -> new LongOpenHashSet());
-            for (INBT n : l2) {
-                try {
-                    set.add(((LongNBT) n).getLong());
-                } catch (RuntimeException ignored) {
-
-                }
-            }
-        }
-        data = this;*/
+        mChunkManager.readNBT(compound.getList(TICKETS, Tag.TAG_COMPOUND));
     }
 
     @Nonnull
     @Override
     public CompoundTag save(@Nonnull CompoundTag compound) {
+        final FluxEvents.DataSave event = FluxEvents.beginDataSave();
         compound.putInt(UNIQUE_ID, mUniqueID);
 
+        int devices = 0;
         ListTag list = new ListTag();
         for (FluxNetwork network : mNetworks.values()) {
             CompoundTag tag = new CompoundTag();
             network.writeCustomTag(tag, FluxConstants.NBT_SAVE_ALL);
             list.add(tag);
+            devices += network.getLogicalDevices(FluxNetwork.ANY).size();
         }
         compound.put(NETWORKS, list);
 
-        /*CompoundNBT tag = new CompoundNBT();
-        for (Map.Entry<ResourceLocation, LongSet> entry : tickets.entrySet()) {
-            LongSet set = entry.getValue();
-            if (!set.isEmpty()) {
-                ListNBT l2 = new ListNBT();
-                for (long l : set) {
-                    l2.add(LongNBT.valueOf(l));
-                }
-                tag.put(entry.getKey().toString(), l2);
-            }
+        ListTag tickets = new ListTag();
+        mChunkManager.writeNBT(tickets);
+        compound.put(TICKETS, tickets);
+        if (event != null) {
+            event.finish(mNetworks.size(), devices);
         }
-        compound.put(TICKETS, tag);*/
         return compound;
     }
 
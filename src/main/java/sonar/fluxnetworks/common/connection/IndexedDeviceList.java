@@ -0,0 +1,110 @@
+package sonar.fluxnetworks.common.connection;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import sonar.fluxnetworks.common.device.TileFluxDevice;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.RandomAccess;
+
+/**
+ * A list of devices that knows the index of each device by identity, server only.
+ * <p>
+ * {@link #contains(Object)}, {@link #indexOf(Object)}, {@link #add(TileFluxDevice)} and
+ * {@link #remove(Object)} are O(1). Removal swaps the last device into the removed slot,
+ * so the order is only meaningful after {@link #sort(Comparator)}. A device can only be
+ * added once.
+ */
+public class IndexedDeviceList extends AbstractList<TileFluxDevice> implements RandomAccess {
+
+    private TileFluxDevice[] mDevices = new TileFluxDevice[16];
+    private int mSize;
+
+    private final Reference2IntOpenHashMap<TileFluxDevice> mIndices = new Reference2IntOpenHashMap<>();
+
+    public IndexedDeviceList() {
+        mIndices.defaultReturnValue(-1);
+    }
+
+    @Override
+    public TileFluxDevice get(int index) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return mDevices[index];
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean add(@Nonnull TileFluxDevice device) {
+        if (mIndices.containsKey(device)) {
+            return false;
+        }
+        if (mSize == mDevices.length) {
+            mDevices = Arrays.copyOf(mDevices, mSize << 1);
+        }
+        mIndices.put(device, mSize);
+        mDevices[mSize++] = device;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(@Nullable Object o) {
+        if (!(o instanceof TileFluxDevice device)) {
+            return false;
+        }
+        final int index = mIndices.removeInt(device);
+        if (index < 0) {
+            return false;
+        }
+        final int last = --mSize;
+        if (index != last) {
+            TileFluxDevice moved = mDevices[last];
+            mDevices[index] = moved;
+            mIndices.put(moved, index);
+        }
+        mDevices[last] = null;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        return o instanceof TileFluxDevice && mIndices.containsKey(o);
+    }
+
+    @Override
+    public int indexOf(@Nullable Object o) {
+        return o instanceof TileFluxDevice ? mIndices.getInt(o) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(@Nullable Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public void sort(@Nullable Comparator<? super TileFluxDevice> c) {
+        Arrays.sort(mDevices, 0, mSize, c);
+        for (int i = 0; i < mSize; i++) {
+            mIndices.put(mDevices[i], i);
+        }
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mDevices, 0, mSize, null);
+        mIndices.clear();
+        mSize = 0;
+        modCount++;
+    }
+}
@@ -0,0 +1,236 @@
+package sonar.fluxnetworks.common.connection;
+
+import net.minecraft.nbt.CompoundTag;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * The long-term history of network statistics, server only.
+ * <p>
+ * Samples are recorded every second and stored in fixed-size rings at multiple resolutions.
+ * Coarser resolutions are downsampled incrementally, each coarser sample is the average of
+ * a fixed number of samples of the previous resolution.
+ *
+ * @see NetworkStatistics
+ */
+public class NetworkHistory {
+
+    /**
+     * Channels of a sample.
+     */
+    public static final int
+            INPUT = 0,
+            OUTPUT = 1,
+            BUFFER = 2,
+            ENERGY = 3;
+    public static final int CHANNEL_COUNT = 4;
+
+    /**
+     * Resolutions, from the finest to the coarsest.
+     */
+    public static final int
+            SECONDS = 0,
+            MINUTES = 1,
+            HOURS = 2;
+    public static final int RESOLUTION_COUNT = 3;
+
+    /**
+     * 1 second for 10 minutes, 1 minute for 24 hours, 1 hour for 30 days.
+     */
+    private static final int[] CAPACITIES = {600, 1440, 720};
+    /**
+     * The number of samples of the previous resolution that make up one sample.
+     */
+    private static final int[] FACTORS = {1, 60, 60};
+    /**
+     * Sample interval in seconds.
+     */
+    private static final int[] INTERVALS = {1, 60, 3600};
+
+    private final Ring[] mRings = new Ring[RESOLUTION_COUNT];
+
+    /**
+     * Running sums of the samples that are not yet downsampled, indexed by resolution, then channel.
+     */
+    private final long[] mSums = new long[RESOLUTION_COUNT * CHANNEL_COUNT];
+    private final int[] mSumCounts = new int[RESOLUTION_COUNT];
+
+    private final long[] mSample = new long[CHANNEL_COUNT];
+
+    public NetworkHistory() {
+        for (int i = 0; i < RESOLUTION_COUNT; i++) {
+            mRings[i] = new Ring(CAPACITIES[i]);
+        }
+    }
+
+    public static int getCapacity(int resolution) {
+        return CAPACITIES[resolution];
+    }
+
+    /**
+     * @return the sample interval in seconds
+     */
+    public static int getInterval(int resolution) {
+        return INTERVALS[resolution];
+    }
+
+    /**
+     * Record a new sample at the finest resolution, called every second.
+     */
+    public void record(long input, long output, long buffer, long energy) {
+        final long[] sample = mSample;
+        sample[INPUT] = input;
+        sample[OUTPUT] = output;
+        sample[BUFFER] = buffer;
+        sample[ENERGY] = energy;
+        push(SECONDS, sample);
+    }
+
+    private void push(int resolution, @Nonnull long[] sample) {
+        mRings[resolution].push(sample);
+        final int next = resolution + 1;
+        if (next == RESOLUTION_COUNT) {
+            return;
+        }
+        final int offset = next * CHANNEL_COUNT;
+        for (int c = 0; c < CHANNEL_COUNT; c++) {
+            mSums[offset + c] += sample[c];
+        }
+        if (++mSumCounts[next] == FACTORS[next]) {
+            // reuse the sample array, the ring has copied the values
+            for (int c = 0; c < CHANNEL_COUNT; c++) {
+                sample[c] = mSums[offset + c] / FACTORS[next];
+                mSums[offset + c] = 0;
+            }
+            mSumCounts[next] = 0;
+            push(next, sample);
+        }
+    }
+
+    /**
+     * @return the number of samples currently retained at the given resolution
+     */
+    public int size(int resolution) {
+        return mRings[resolution].mSize;
+    }
+
+    /**
+     * @return the total number of samples ever recorded at the given resolution since loaded,
+     * which is the sequence number of the next sample
+     */
+    public long getCount(int resolution) {
+        return mRings[resolution].mCount;
+    }
+
+    /**
+     * Get a sample value.
+     *
+     * @param resolution the resolution, e.g. {@link #SECONDS}
+     * @param age        0 is the latest sample, must be less than {@link #size(int)}
+     * @param channel    the channel, e.g. {@link #INPUT}
+     * @return the value
+     */
+    public long get(int resolution, int age, int channel) {
+        return mRings[resolution].get(age, channel);
+    }
+
+    /**
+     * Copy the latest values of a channel into an array, from the oldest to the latest.
+     *
+     * @param resolution the resolution, e.g. {@link #SECONDS}
+     * @param channel    the channel, e.g. {@link #INPUT}
+     * @param dst        the destination, its length is the maximum number of values to copy
+     * @return the number of values copied
+     */
+    public int copy(int resolution, int channel, @Nonnull long[] dst) {
+        final Ring ring = mRings[resolution];
+        final int count = Math.min(ring.mSize, dst.length);
+        for (int i = 0; i < count; i++) {
+            dst[i] = ring.get(count - 1 - i, channel);
+        }
+        return count;
+    }
+
+    public void writeNBT(@Nonnull CompoundTag tag) {
+        for (int i = 0; i < RESOLUTION_COUNT; i++) {
+            tag.putLongArray("r" + i, mRings[i].toArray());
+        }
+        tag.putLongArray("s", mSums);
+        tag.putIntArray("n", mSumCounts);
+    }
+
+    public void readNBT(@Nonnull CompoundTag tag) {
+        for (int i = 0; i < RESOLUTION_COUNT; i++) {
+            mRings[i].fromArray(tag.getLongArray("r" + i));
+        }
+        long[] sums = tag.getLongArray("s");
+        int[] counts = tag.getIntArray("n");
+        if (sums.length == mSums.length && counts.length == mSumCounts.length) {
+            System.arraycopy(sums, 0, mSums, 0, sums.length);
+            System.arraycopy(counts, 0, mSumCounts, 0, counts.length);
+        }
+    }
+
+    /**
+     * A ring of samples, channels are interleaved.
+     */
+    private static final class Ring {
+
+        private final long[] mData;
+        private final int mCapacity;
+
+        /**
+         * The slot of the next sample.
+         */
+        private int mHead;
+        private int mSize;
+        private long mCount;
+
+        private Ring(int capacity) {
+            mData = new long[capacity * CHANNEL_COUNT];
+            mCapacity = capacity;
+        }
+
+        private void push(@Nonnull long[] sample) {
+            System.arraycopy(sample, 0, mData, mHead * CHANNEL_COUNT, CHANNEL_COUNT);
+            mHead = (mHead + 1) % mCapacity;
+            if (mSize < mCapacity) {
+                mSize++;
+            }
+            mCount++;
+        }
+
+        private long get(int age, int channel) {
+            assert age >= 0 && age < mSize;
+            int slot = mHead - 1 - age;
+            if (slot < 0) {
+                slot += mCapacity;
+            }
+            return mData[slot * CHANNEL_COUNT + channel];
+        }
+
+        /**
+         * @return samples from the oldest to the latest
+         */
+        @Nonnull
+        private long[] toArray() {
+            final long[] result = new long[mSize * CHANNEL_COUNT];
+            final int start = (mHead - mSize + mCapacity) % mCapacity;
+            final int first = Math.min(mSize, mCapacity - start);
+            System.arraycopy(mData, start * CHANNEL_COUNT, result, 0, first * CHANNEL_COUNT);
+            System.arraycopy(mData, 0, result, first * CHANNEL_COUNT, (mSize - first) * CHANNEL_COUNT);
+            return result;
+        }
+
+        private void fromArray(@Nonnull long[] data) {
+            Arrays.fill(mData, 0);
+            int size = Math.min(data.length / CHANNEL_COUNT, mCapacity);
+            // keep the latest samples if the capacity shrinks
+            System.arraycopy(data, data.length - size * CHANNEL_COUNT, mData, 0, size * CHANNEL_COUNT);
+            mSize = size;
+            mHead = size % mCapacity;
+            mCount = size;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package sonar.fluxnetworks.common.connection;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSets;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Secondary index of networks by owner, server only.
+ * <p>
+ * Each network is indexed by its owner at the time it was indexed. The index must be refreshed
+ * with {@link #update(FluxNetwork)} after the owner changed. Then per-player queries are
+ * proportional to the networks of that player, rather than all networks.
+ */
+public class NetworkIndex {
+
+    private final Reference2ObjectOpenHashMap<FluxNetwork, UUID> mOwners = new Reference2ObjectOpenHashMap<>();
+
+    private final HashMap<UUID, ReferenceLinkedOpenHashSet<FluxNetwork>> mByOwner = new HashMap<>();
+
+    NetworkIndex() {
+    }
+
+    /**
+     * Index a network, or refresh it if it's already indexed.
+     */
+    void add(@Nonnull FluxNetwork network) {
+        remove(network);
+        final UUID owner = network.getOwnerUUID();
+        mByOwner.computeIfAbsent(owner, __ -> new ReferenceLinkedOpenHashSet<>()).add(network);
+        mOwners.put(network, owner);
+    }
+
+    /**
+     * Refresh a network after its owner may have changed.
+     * Does nothing if the network is not indexed, e.g. it has been deleted.
+     */
+    public void update(@Nonnull FluxNetwork network) {
+        if (mOwners.containsKey(network)) {
+            add(network);
+        }
+    }
+
+    void remove(@Nonnull FluxNetwork network) {
+        final UUID owner = mOwners.remove(network);
+        if (owner == null) {
+            return;
+        }
+        var owned = mByOwner.get(owner);
+        if (owned != null && owned.remove(network) && owned.isEmpty()) {
+            mByOwner.remove(owner);
+        }
+    }
+
+    void clear() {
+        mOwners.clear();
+        mByOwner.clear();
+    }
+
+    /**
+     * @param owner the player UUID
+     * @return an unmodifiable view of the networks owned by the player
+     */
+    @Nonnull
+    public ReferenceSet<FluxNetwork> getOwnedNetworks(@Nonnull UUID owner) {
+        var owned = mByOwner.get(owner);
+        return owned == null ? ReferenceSets.emptySet() : ReferenceSets.unmodifiable(owned);
+    }
+}
@@ -3,17 +3,22 @@ package sonar.fluxnetworks.common.connection;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongList;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
 import sonar.fluxnetworks.common.device.TileFluxDevice;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class NetworkStatistics {
 
     public static final int CHANGE_COUNT = 6;
+    public static final int TOP_DEVICE_COUNT = 5;
 
     private final FluxNetwork network;
 
     private int timer;
+    // not held while throttled, history samples must be a second apart
+    private int historyTimer;
 
     public int fluxPlugCount;
     public int fluxPointCount;
@@ -33,9 +38,36 @@ public class NetworkStatistics {
     private long energyOutput4;
 
     public int averageTickMicro;
+
+    /**
+     * Slots charged and slots skipped by wireless charging of all controllers in the last second.
+     */
+    public int wirelessChargedSlots;
+    public int wirelessSkippedSlots;
+
+    private int wirelessChargedSlots20;
+    private int wirelessSkippedSlots20;
+
+    /**
+     * Top devices by throughput and by starved ticks, only valid on the client side.
+     *
+     * @see DeviceCounters
+     */
+    public final List<DeviceCounters.Entry> topThroughput = new ArrayList<>();
+    public final List<DeviceCounters.Entry> topStarved = new ArrayList<>();
     private long runningTotalNano;
+    private int runningTicks;
+
+    private long phaseNanoTime;
+    /**
+     * The sum of phase durations in the current cycle.
+     */
+    private long cycleNanoTime;
 
-    private long startNanoTime;
+    /**
+     * Tick duration distribution, recorded on the server side, snapshot only on the client side.
+     */
+    public final TickHistogram tickHistogram = new TickHistogram();
 
     public NetworkStatistics(FluxNetwork network) {
         this.network = network;
@@ -43,22 +75,61 @@ public class NetworkStatistics {
     }
 
     public void startProfiling() {
-        startNanoTime = System.nanoTime();
+        phaseNanoTime = System.nanoTime();
+        cycleNanoTime = 0;
+    }
+
+    /**
+     * Mark the start of a phase that doesn't immediately follow the previous one, e.g. when
+     * phases of all networks are interleaved, so waiting time is not counted.
+     */
+    public void beginPhase() {
+        phaseNanoTime = System.nanoTime();
+    }
+
+    /**
+     * Record the duration of a phase that ends now, see {@link TickHistogram#PHASE_QUEUE}.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long endPhase(int phase) {
+        long now = System.nanoTime();
+        long elapsed = now - phaseNanoTime;
+        tickHistogram.record(phase, elapsed);
+        cycleNanoTime += elapsed;
+        phaseNanoTime = now;
+        return elapsed;
     }
 
     public void stopProfiling() {
-        if (timer == 0) {
-            weakestTick();
-        }
-        if (timer % 5 == 0) {
-            weakTick();
+        // the timer is held while throttled, so sampling is deferred rather than skipped
+        final boolean throttled = network.isThrottled();
+        // account this cycle before sampling, so the average is never taken over zero ticks
+        long elapsed = cycleNanoTime + (System.nanoTime() - phaseNanoTime);
+        runningTotalNano += elapsed;
+        runningTicks++;
+        tickHistogram.record(TickHistogram.PHASE_CYCLE, elapsed);
+
+        if (!throttled) {
+            if (timer == 0) {
+                weakestTick();
+            }
+            if (timer % 5 == 0) {
+                weakTick();
+            }
+            if (timer % 20 == 0) {
+                weakerTick();
+            }
+            timer = ++timer % 100;
         }
-        if (timer % 20 == 0) {
-            weakerTick();
+        // sample the latest statistics, which may be deferred while throttled
+        if (++historyTimer == 20) {
+            historyTimer = 0;
+            NetworkHistory history = network.getHistory();
+            if (history != null) {
+                history.record(energyInput, energyOutput, totalBuffer, totalEnergy);
+            }
         }
-        runningTotalNano += System.nanoTime() - startNanoTime;
-
-        timer = ++timer % 100;
     }
 
     /**
@@ -102,9 +173,14 @@ public class NetworkStatistics {
         energyInput4 = 0;
         energyOutput4 = 0;
         energyChange5 += Math.max(energyInput, energyOutput);
+        wirelessChargedSlots = wirelessChargedSlots20;
+        wirelessSkippedSlots = wirelessSkippedSlots20;
+        wirelessChargedSlots20 = 0;
+        wirelessSkippedSlots20 = 0;
 
-        averageTickMicro = (int) Math.min(runningTotalNano / 20000, Integer.MAX_VALUE);
+        averageTickMicro = (int) Math.min(runningTotalNano / (runningTicks * 1000L), Integer.MAX_VALUE);
         runningTotalNano = 0;
+        runningTicks = 0;
     }
 
     /**
@@ -116,6 +192,18 @@ public class NetworkStatistics {
         }
         energyChange.set(CHANGE_COUNT - 1, energyChange5 / 5);
         energyChange5 = 0;
+        tickHistogram.update();
+    }
+
+    /**
+     * Add the result of a wireless charging pass of a controller, server only.
+     *
+     * @param charged the number of slots charged
+     * @param skipped the number of slots skipped
+     */
+    public void addWirelessCharge(int charged, int skipped) {
+        wirelessChargedSlots20 += charged;
+        wirelessSkippedSlots20 += skipped;
     }
 
     public int getConnectionCount() {
@@ -133,6 +221,16 @@ public class NetworkStatistics {
         tag.putLong("8", totalEnergy);
         tag.putInt("9", averageTickMicro);
         tag.putLongArray("a", energyChange);
+        tag.putInt("b", wirelessChargedSlots);
+        tag.putInt("c", wirelessSkippedSlots);
+        tag.putLongArray("f", tickHistogram.getSnapshot());
+        DeviceCounters counters = network.getDeviceCounters();
+        if (counters != null) {
+            tag.put("d", DeviceCounters.Entry.writeList(
+                    counters.getTop(TOP_DEVICE_COUNT, DeviceCounters.SORT_THROUGHPUT)));
+            tag.put("e", DeviceCounters.Entry.writeList(
+                    counters.getTop(TOP_DEVICE_COUNT, DeviceCounters.SORT_STARVED)));
+        }
     }
 
     public void readNBT(CompoundTag tag) {
@@ -149,5 +247,10 @@ public class NetworkStatistics {
         for (int i = 0; i < a.length; i++) {
             energyChange.set(i, a[i]);
         }
+        wirelessChargedSlots = tag.getInt("b");
+        wirelessSkippedSlots = tag.getInt("c");
+        tickHistogram.setSnapshot(tag.getLongArray("f"));
+        DeviceCounters.Entry.readList(tag.getList("d", Tag.TAG_COMPOUND), topThroughput);
+        DeviceCounters.Entry.readList(tag.getList("e", Tag.TAG_COMPOUND), topStarved);
     }
 }
@@ -0,0 +1,166 @@
+package sonar.fluxnetworks.common.connection;
+
+import sonar.fluxnetworks.FluxConfig;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ticks all networks within a global time budget per server tick, server only.
+ * <p>
+ * The start order is rotated every tick. Each network's cost of a full tick is measured, if it
+ * doesn't fit into the remaining budget, the network is throttled: it still transfers energy
+ * as usual, but its non-critical work is deferred to a later tick, for at most
+ * {@link #MAX_THROTTLED_TICKS} ticks in a row.
+ * <p>
+ * Networks never share devices, and matching plugs and points only touches transfer handlers.
+ * If parallel transfer is enabled, all networks begin their cycles on the server thread, then
+ * match in parallel on a fork-join pool, then end their cycles on the server thread.
+ *
+ * @see FluxNetwork#isThrottled()
+ */
+public class NetworkTickScheduler {
+
+    /**
+     * Non-critical work of a network can't be deferred longer than this.
+     */
+    public static final int MAX_THROTTLED_TICKS = 20;
+
+    /**
+     * The minimum number of networks to match in parallel, fewer networks are not worth it.
+     */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    private static ForkJoinPool sPool;
+
+    private final ArrayList<ServerFluxNetwork> mOrder = new ArrayList<>();
+    private int mRotation;
+
+    NetworkTickScheduler() {
+    }
+
+    void tick(@Nonnull Collection<FluxNetwork> networks) {
+        final ArrayList<ServerFluxNetwork> order = mOrder;
+        order.clear();
+        for (FluxNetwork network : networks) {
+            if (network instanceof ServerFluxNetwork n) {
+                order.add(n);
+            }
+        }
+        final int size = order.size();
+        if (size == 0) {
+            return;
+        }
+        final long budget = FluxConfig.networkTickBudget * 1000L;
+        final int start = mRotation = (mRotation + 1) % size;
+        if (FluxConfig.enableParallelTransfer && size >= PARALLEL_THRESHOLD) {
+            tickParallel(order, start, budget);
+        } else {
+            long spent = 0;
+            for (int i = 0; i < size; i++) {
+                ServerFluxNetwork network = order.get((start + i) % size);
+                boolean throttled = shouldThrottle(network, spent, budget);
+                network.mThrottled = throttled;
+                long startTime = System.nanoTime();
+                network.onEndServerTick();
+                long cost = System.nanoTime() - startTime;
+                spent += cost;
+                onTicked(network, throttled, cost);
+            }
+        }
+        order.clear();
+    }
+
+    private static void tickParallel(@Nonnull List<ServerFluxNetwork> order, int start, long budget) {
+        final int size = order.size();
+        final long tickStart = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            ServerFluxNetwork network = order.get((start + i) % size);
+            long startTime = System.nanoTime();
+            network.beginCycle();
+            network.mCycleCost = System.nanoTime() - startTime;
+        }
+        getPool().invoke(new TransferTask(order, 0, size));
+        // throttling only affects the end of a cycle, so decide it here
+        long spent = System.nanoTime() - tickStart;
+        for (int i = 0; i < size; i++) {
+            ServerFluxNetwork network = order.get((start + i) % size);
+            boolean throttled = shouldThrottle(network, spent, budget);
+            network.mThrottled = throttled;
+            long startTime = System.nanoTime();
+            network.endCycle();
+            long cost = System.nanoTime() - startTime;
+            spent += cost;
+            onTicked(network, throttled, network.mCycleCost + cost);
+        }
+    }
+
+    private static boolean shouldThrottle(@Nonnull ServerFluxNetwork network, long spent, long budget) {
+        return budget > 0 && spent + network.mEstimatedCost > budget &&
+                network.mThrottledTicks < MAX_THROTTLED_TICKS;
+    }
+
+    private static void onTicked(@Nonnull ServerFluxNetwork network, boolean throttled, long cost) {
+        if (throttled) {
+            network.mThrottledTicks++;
+        } else {
+            network.mThrottledTicks = 0;
+            // exponential moving average of full ticks
+            network.mEstimatedCost += (cost - network.mEstimatedCost) >> 3;
+        }
+    }
+
+    @Nonnull
+    private static ForkJoinPool getPool() {
+        if (sPool == null) {
+            // worker threads need the mod class loader
+            final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            sPool = new ForkJoinPool(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Flux Networks Transfer #" + thread.getPoolIndex());
+                thread.setContextClassLoader(loader);
+                return thread;
+            }, null, false);
+        }
+        return sPool;
+    }
+
+    /**
+     * Match plugs and points of a range of networks, split until a few networks are left.
+     */
+    private static final class TransferTask extends RecursiveAction {
+
+        private static final int LEAF_SIZE = 4;
+
+        private final List<ServerFluxNetwork> mNetworks;
+        private final int mFrom;
+        private final int mTo;
+
+        private TransferTask(List<ServerFluxNetwork> networks, int from, int to) {
+            mNetworks = networks;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= LEAF_SIZE) {
+                for (int i = mFrom; i < mTo; i++) {
+                    ServerFluxNetwork network = mNetworks.get(i);
+                    long startTime = System.nanoTime();
+                    network.transfer();
+                    network.mCycleCost += System.nanoTime() - startTime;
+                }
+            } else {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(new TransferTask(mNetworks, mFrom, middle),
+                        new TransferTask(mNetworks, middle, mTo));
+            }
+        }
+    }
+}
@@ -38,6 +38,10 @@ public class PhantomFluxDevice implements IFluxDevice {
     private boolean mForcedLoading;
     private long mBuffer;
     private long mChange;
+    /**
+     * The energy capacity of an unloaded storage, server only.
+     */
+    private long mCapacity;
     private ItemStack mDisplayStack;
 
     public PhantomFluxDevice() {
@@ -61,6 +65,9 @@ public class PhantomFluxDevice implements IFluxDevice {
         t.mSurgeMode = device.getSurgeMode();
         t.mDisableLimit = device.getDisableLimit();
         t.mBuffer = device.getTransferBuffer();
+        if (t.mDeviceType.isStorage()) {
+            t.mCapacity = device.getMaxTransferLimit();
+        }
         t.mDisplayStack = device.getDisplayStack();
         return t;
     }
@@ -80,6 +87,29 @@ public class PhantomFluxDevice implements IFluxDevice {
         return t;
     }
 
+    /**
+     * Copy the data of {@link FluxConstants#NBT_PHANTOM_UPDATE} from a device decoded by
+     * {@link #makeUpdated(GlobalPos, CompoundTag)}, client only.
+     *
+     * @param src the updated device at the same position
+     */
+    public void copyUpdated(@Nonnull PhantomFluxDevice src) {
+        assert mGlobalPos.equals(src.mGlobalPos);
+        mDeviceType = src.mDeviceType;
+        mNetworkID = src.mNetworkID;
+        mCustomName = src.mCustomName;
+        mPriority = src.mPriority;
+        mLimit = src.mLimit;
+        mSurgeMode = src.mSurgeMode;
+        mDisableLimit = src.mDisableLimit;
+        mOwnerUUID = src.mOwnerUUID;
+        mBuffer = src.mBuffer;
+        mDisplayStack = src.mDisplayStack;
+        mForcedLoading = src.mForcedLoading;
+        mChunkLoaded = src.mChunkLoaded;
+        mChange = src.mChange;
+    }
+
     @Override
     public void writeCustomTag(@Nonnull CompoundTag tag, byte type) {
         if (type == FluxConstants.NBT_SAVE_ALL || type == FluxConstants.NBT_PHANTOM_UPDATE) {
@@ -95,6 +125,9 @@ public class PhantomFluxDevice implements IFluxDevice {
             tag.putLong(FluxConstants.BUFFER, mBuffer);
             mDisplayStack.save(tag);
         }
+        if (type == FluxConstants.NBT_SAVE_ALL && mDeviceType.isStorage()) {
+            tag.putLong(FluxConstants.CAPACITY, mCapacity);
+        }
     }
 
     @Override
@@ -114,6 +147,10 @@ public class PhantomFluxDevice implements IFluxDevice {
             mBuffer = tag.getLong(FluxConstants.BUFFER);
             mDisplayStack = ItemStack.of(tag);
         }
+        if (type == FluxConstants.NBT_SAVE_ALL && mDeviceType.isStorage()) {
+            // older data doesn't have it, only allow discharging
+            mCapacity = tag.contains(FluxConstants.CAPACITY) ? tag.getLong(FluxConstants.CAPACITY) : mBuffer;
+        }
         if (type == FluxConstants.NBT_PHANTOM_UPDATE) {
             mForcedLoading = tag.getBoolean(FluxConstants.FORCED_LOADING);
             mChunkLoaded = tag.getBoolean(FluxConstants.CHUNK_LOADED);
@@ -211,6 +248,21 @@ public class PhantomFluxDevice implements IFluxDevice {
         return mChange;
     }
 
+    /**
+     * @return the energy capacity if this is an unloaded storage
+     */
+    long getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Update the energy of an unloaded storage that is simulated by the network.
+     */
+    void setTransfer(long buffer, long change) {
+        mBuffer = buffer;
+        mChange = change;
+    }
+
     @Nullable
     @Override
     public FluxMenu createMenu(int containerId, @Nonnull Inventory inventory, @Nonnull Player player) {
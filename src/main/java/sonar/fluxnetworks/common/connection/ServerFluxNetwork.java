@@ -1,16 +1,20 @@
 package sonar.fluxnetworks.common.connection;
 
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.core.GlobalPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.server.ServerLifecycleHooks;
+import sonar.fluxnetworks.FluxConfig;
 import sonar.fluxnetworks.api.FluxConstants;
 import sonar.fluxnetworks.api.device.*;
 import sonar.fluxnetworks.api.network.*;
 import sonar.fluxnetworks.common.capability.FluxPlayer;
 import sonar.fluxnetworks.common.device.TileFluxDevice;
+import sonar.fluxnetworks.common.util.FluxEvents;
 
 import javax.annotation.Nonnull;
-import java.lang.reflect.Array;
+import javax.annotation.Nullable;
 import java.util.*;
 
 /**
@@ -28,11 +32,11 @@ public class ServerFluxNetwork extends FluxNetwork {
     private static final Class<?>[] sLogicalTypes =
             {IFluxDevice.class, IFluxPlug.class, IFluxPoint.class, IFluxStorage.class, IFluxController.class};
 
-    private final ArrayList<TileFluxDevice>[] mDevices;
+    private final IndexedDeviceList[] mDevices;
 
-    // LinkedList doesn't create large arrays, should be better
-    private final LinkedList<TileFluxDevice> mToAdd = new LinkedList<>();
-    private final LinkedList<TileFluxDevice> mToRemove = new LinkedList<>();
+    // linked hash sets keep the queue order, with O(1) lookup and removal by identity
+    private final ReferenceLinkedOpenHashSet<TileFluxDevice> mToAdd = new ReferenceLinkedOpenHashSet<>();
+    private final ReferenceLinkedOpenHashSet<TileFluxDevice> mToRemove = new ReferenceLinkedOpenHashSet<>();
 
     private boolean mSortConnections = true;
 
@@ -43,11 +47,36 @@ public class ServerFluxNetwork extends FluxNetwork {
 
     private String mPassword;
 
+    private final NetworkHistory mHistory = new NetworkHistory();
+    private final DeviceCounters mCounters = new DeviceCounters();
+
+    /**
+     * Ticks between distributions of pooled storage energy.
+     */
+    private static final int POOL_RECONCILE_INTERVAL = 20;
+
+    private final StoragePool mStoragePool;
+    private int mPoolTicks;
+
+    // states of the current cycle, see onEndServerTick()
+    @Nullable
+    private FluxEvents.NetworkTick mTickEvent;
+    private long mQueueTime;
+    private long mCycleStartTime;
+    private long mTransferTime;
+    private long mEnergyMoved;
+
+    // states of NetworkTickScheduler
+    boolean mThrottled;
+    int mThrottledTicks;
+    long mEstimatedCost;
+    long mCycleCost;
+
     {
-        @SuppressWarnings("unchecked") final ArrayList<TileFluxDevice>[] devices =
-                (ArrayList<TileFluxDevice>[]) Array.newInstance(ArrayList.class, sLogicalTypes.length);
-        Arrays.setAll(devices, type -> new ArrayList<>());
+        final IndexedDeviceList[] devices = new IndexedDeviceList[sLogicalTypes.length];
+        Arrays.setAll(devices, type -> new IndexedDeviceList());
         mDevices = devices;
+        mStoragePool = new StoragePool(devices[STORAGE], mCounters);
     }
 
     ServerFluxNetwork() {
@@ -88,7 +117,8 @@ public class ServerFluxNetwork extends FluxNetwork {
 
     private void handleConnectionQueue() {
         TileFluxDevice device;
-        while ((device = mToAdd.poll()) != null) {
+        while (!mToAdd.isEmpty()) {
+            device = mToAdd.removeFirst();
             for (int type = 0; type < sLogicalTypes.length; type++) {
                 if (sLogicalTypes[type].isInstance(device)) {
                     var list = getLogicalDevices(type);
@@ -96,8 +126,10 @@ public class ServerFluxNetwork extends FluxNetwork {
                     mSortConnections |= list.add(device);
                 }
             }
+            device.getTransferHandler().mCounterSlot = mCounters.allocate(device);
         }
-        while ((device = mToRemove.poll()) != null) {
+        while (!mToRemove.isEmpty()) {
+            device = mToRemove.removeFirst();
             for (int type = 0; type < sLogicalTypes.length; type++) {
                 if (sLogicalTypes[type].isInstance(device)) {
                     var list = getLogicalDevices(type);
@@ -105,35 +137,68 @@ public class ServerFluxNetwork extends FluxNetwork {
                     mSortConnections |= list.remove(device);
                 }
             }
+            mCounters.release(device);
+            if (FluxConfig.enableUnloadedStorages &&
+                    mConnectionMap.get(device.getGlobalPos()) instanceof PhantomFluxDevice p &&
+                    p.getDeviceType().isStorage()) {
+                // the storage is unloaded, but still serves the network
+                mStoragePool.addOffline(p);
+            }
         }
         if (mSortConnections) {
             getLogicalDevices(PLUG).sort(sDescendingOrder);
             getLogicalDevices(POINT).sort(sDescendingOrder);
+            mStoragePool.update();
             mSortConnections = false;
         }
     }
 
     @Nonnull
     @Override
-    public ArrayList<TileFluxDevice> getLogicalDevices(int logic) {
+    public IndexedDeviceList getLogicalDevices(int logic) {
         return mDevices[logic];
     }
 
     @Override
     public void onEndServerTick() {
+        beginCycle();
+        transfer();
+        endCycle();
+    }
+
+    /**
+     * Handle the connection queue and simulate external transfer. Server thread only.
+     */
+    void beginCycle() {
+        mTickEvent = FluxEvents.beginNetworkTick();
         mStatistics.startProfiling();
 
         handleConnectionQueue();
+        mQueueTime = mStatistics.endPhase(TickHistogram.PHASE_QUEUE);
 
         mBufferLimiter = 0;
 
-        List<TileFluxDevice> devices = getLogicalDevices(ANY);
-        for (var d : devices) {
+        // storages do nothing in a cycle, they are driven by the pool
+        for (var d : getNonStorages(PLUG)) {
+            d.getTransferHandler().onCycleStart();
+        }
+        for (var d : getNonStorages(POINT)) {
             d.getTransferHandler().onCycleStart();
         }
+        mCycleStartTime = mStatistics.endPhase(TickHistogram.PHASE_CYCLE_START);
+    }
 
-        List<TileFluxDevice> plugs = getLogicalDevices(PLUG);
-        List<TileFluxDevice> points = getLogicalDevices(POINT);
+    /**
+     * Match plugs and points. This only touches the transfer handlers of this network,
+     * so it can run on a worker thread while the server thread is waiting for it.
+     *
+     * @see NetworkTickScheduler
+     */
+    void transfer() {
+        mStatistics.beginPhase();
+        long moved = 0;
+        List<TileFluxDevice> plugs = getNonStorages(PLUG);
+        List<TileFluxDevice> points = getNonStorages(POINT);
         if (!points.isEmpty() && !plugs.isEmpty()) {
             // push into stack because they called too many times below
             final TransferIterator plugIterator = mPlugTransferIterator.reset(plugs);
@@ -143,13 +208,11 @@ public class ServerFluxNetwork extends FluxNetwork {
                 while (plugIterator.hasNext()) {
                     TileFluxDevice plug = plugIterator.next();
                     TileFluxDevice point = pointIterator.next();
-                    if (plug.getDeviceType() == point.getDeviceType()) {
-                        break CYCLE; // Storage always have the lowest priority, the cycle can be broken here.
-                    }
                     // we don't need to simulate this action
                     long actual = plug.getTransferHandler().removeFromBuffer(point.getTransferHandler().getRequest());
                     if (actual > 0) {
                         point.getTransferHandler().addToBuffer(actual);
+                        moved += actual;
                         continue CYCLE;
                     } else {
                         // although the plug still need transfer (buffer > 0)
@@ -160,19 +223,122 @@ public class ServerFluxNetwork extends FluxNetwork {
                 break; // all plugs have been used
             }
         }
+        // storages have the lowest priority, and never transfer to each other
+        final StoragePool pool = mStoragePool;
+        if (!pool.isEmpty()) {
+            // plugs have been used up, points draw from storages
+            for (var point : points) {
+                TransferHandler h = point.getTransferHandler();
+                long request = h.getRequest();
+                if (request > 0) {
+                    long actual = pool.removeFromBuffer(request);
+                    if (actual <= 0) {
+                        break;
+                    }
+                    h.addToBuffer(actual);
+                    moved += actual;
+                }
+            }
+            // points have been satisfied, plugs charge storages
+            for (var plug : plugs) {
+                long request = pool.getRequest();
+                if (request <= 0) {
+                    break;
+                }
+                long actual = plug.getTransferHandler().removeFromBuffer(request);
+                if (actual > 0) {
+                    pool.addToBuffer(actual);
+                    moved += actual;
+                }
+            }
+        }
+        mEnergyMoved = moved;
+        mTransferTime = mStatistics.endPhase(TickHistogram.PHASE_TRANSFER);
+    }
+
+    /**
+     * Perform external transfer and update statistics. Server thread only.
+     */
+    void endCycle() {
+        mStatistics.beginPhase();
+        long limiter = endCycle(getNonStorages(PLUG)) + endCycle(getNonStorages(POINT));
+        mStoragePool.onCycleEnd();
+        limiter += mStoragePool.getRequest();
+        mBufferLimiter = limiter;
+        // distributing pooled energy is non-critical
+        if (++mPoolTicks >= POOL_RECONCILE_INTERVAL && !mThrottled) {
+            if (!FluxConfig.enableUnloadedStorages) {
+                mStoragePool.clearOffline();
+            }
+            mStoragePool.update();
+            mPoolTicks = 0;
+        }
+        final long cycleEndTime = mStatistics.endPhase(TickHistogram.PHASE_CYCLE_END);
+
+        mStatistics.stopProfiling();
+        final FluxEvents.NetworkTick event = mTickEvent;
+        if (event != null) {
+            event.finish(mID, getLogicalDevices(ANY).size(), getLogicalDevices(PLUG).size(), getLogicalDevices(POINT).size(),
+                    mEnergyMoved, mQueueTime, mCycleStartTime, mTransferTime, cycleEndTime);
+            mTickEvent = null;
+        }
+    }
 
+    /**
+     * @return the sum of requests after the cycle
+     */
+    private long endCycle(@Nonnull List<TileFluxDevice> devices) {
         long limiter = 0;
         for (var d : devices) {
             TransferHandler h = d.getTransferHandler();
+            // still requesting after the internal transfer
+            boolean starved = h.getRequest() > 0;
             h.onCycleEnd();
+            long change = h.getChange();
+            mCounters.record(h.mCounterSlot, change, starved, change != 0 && Math.abs(change) >= h.getLimit());
             limiter += h.getRequest();
-            if (h.getChange() != 0) {
+            if (change != 0) {
                 d.markEnergyChanged();
             }
         }
-        mBufferLimiter = limiter;
+        return limiter;
+    }
 
-        mStatistics.stopProfiling();
+    /**
+     * Storages are both plugs and points, and always sorted last.
+     *
+     * @param logic {@link #PLUG} or {@link #POINT}
+     * @return a view of the sorted list without storages
+     */
+    @Nonnull
+    private List<TileFluxDevice> getNonStorages(int logic) {
+        List<TileFluxDevice> list = getLogicalDevices(logic);
+        return list.subList(0, list.size() - getLogicalDevices(STORAGE).size());
+    }
+
+    /**
+     * Distribute pooled energy to storages, so their buffers are up-to-date.
+     * Called before a storage is observed or saved.
+     */
+    public void reconcileStorages() {
+        mStoragePool.reconcile();
+    }
+
+    @Nonnull
+    @Override
+    public NetworkHistory getHistory() {
+        return mHistory;
+    }
+
+    @Nonnull
+    @Override
+    public DeviceCounters getDeviceCounters() {
+        return mCounters;
+    }
+
+    @Override
+    public boolean isThrottled() {
+        return mThrottled;
     }
 
     @Override
@@ -183,6 +349,14 @@ public class ServerFluxNetwork extends FluxNetwork {
     @Nonnull
     @Override
     public AccessLevel getPlayerAccess(@Nonnull Player player) {
+        return FluxNetworkData.getAccessCache().get(player, this);
+    }
+
+    /**
+     * Compute the access level without cache, see {@link AccessCache}.
+     */
+    @Nonnull
+    AccessLevel computePlayerAccess(@Nonnull Player player) {
         if (FluxPlayer.isPlayerSuperAdmin(player)) {
             return AccessLevel.SUPER_ADMIN;
         }
@@ -201,8 +375,10 @@ public class ServerFluxNetwork extends FluxNetwork {
     @Override
     public void onDelete() {
         super.onDelete();
+        mStoragePool.reconcile();
         getLogicalDevices(ANY).forEach(TileFluxDevice::disconnect);
         Arrays.fill(mDevices, null);
+        mCounters.clear();
         mToAdd.clear();
         mToRemove.clear();
     }
@@ -218,8 +394,15 @@ public class ServerFluxNetwork extends FluxNetwork {
             return false;
         }
         if (!mToAdd.contains(device) && !getLogicalDevices(ANY).contains(device)) {
-            mToAdd.offer(device);
+            mToAdd.add(device);
             mToRemove.remove(device);
+            if (mConnectionMap.get(device.getGlobalPos()) instanceof PhantomFluxDevice p &&
+                    mStoragePool.removeOffline(p)) {
+                // the storage is loaded again, take over the energy simulated while it was unloaded
+                device.getTransferHandler().mBuffer = p.getTransferBuffer();
+                device.markEnergyChanged();
+                mSortConnections = true;
+            }
             mConnectionMap.put(device.getGlobalPos(), device);
             return true;
         }
@@ -229,7 +412,11 @@ public class ServerFluxNetwork extends FluxNetwork {
     @Override
     public void enqueueConnectionRemoval(@Nonnull TileFluxDevice device, boolean unload) {
         if (!mToRemove.contains(device) && getLogicalDevices(ANY).contains(device)) {
-            mToRemove.offer(device);
+            if (device.getDeviceType().isStorage()) {
+                // the storage takes its energy with it
+                mStoragePool.reconcile();
+            }
+            mToRemove.add(device);
             mToAdd.remove(device);
             if (unload) {
                 // create a fake device on server side, representing it has ever connected to
@@ -244,14 +431,58 @@ public class ServerFluxNetwork extends FluxNetwork {
 
     public void setPassword(@Nonnull String password) {
         mPassword = password;
+        FluxNetworkData.getAccessCache().invalidateNetwork(mID);
     }
 
     public void markSortConnections() {
         mSortConnections = true;
     }
 
+    /**
+     * Apply the same settings to many devices of this network at once. The devices are sorted
+     * at most once, and chunk loading changes are applied together at the end of this tick.
+     *
+     * @param positions the positions of devices, unloaded devices are skipped
+     * @param settings  the decoded settings
+     * @return the number of devices changed
+     */
+    public int applySettings(@Nonnull Iterable<GlobalPos> positions, @Nonnull DeviceSettings settings) {
+        if (settings.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        boolean sort = false;
+        for (GlobalPos pos : positions) {
+            if (mConnectionMap.get(pos) instanceof TileFluxDevice device) {
+                sort |= device.applySettings(settings);
+                count++;
+            }
+        }
+        mSortConnections |= sort;
+        return count;
+    }
+
+    @Override
+    public boolean setSecurityLevel(@Nonnull SecurityLevel level) {
+        if (super.setSecurityLevel(level)) {
+            FluxNetworkData.getAccessCache().invalidateNetwork(mID);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public int changeMembership(@Nonnull Player player, @Nonnull UUID targetUUID, byte type) {
+        final int code = changeMembershipInternal(player, targetUUID, type);
+        if (code == FluxConstants.RESPONSE_SUCCESS) {
+            // the ownership may be transferred
+            FluxNetworkData.getIndex().update(this);
+            FluxNetworkData.getAccessCache().invalidateNetwork(mID);
+        }
+        return code;
+    }
+
+    private int changeMembershipInternal(@Nonnull Player player, @Nonnull UUID targetUUID, byte type) {
         final AccessLevel access = getPlayerAccess(player);
         boolean editPermission = access.canEdit();
         boolean ownerPermission = access.canDelete();
@@ -337,9 +568,16 @@ public class ServerFluxNetwork extends FluxNetwork {
 
     @Override
     public void writeCustomTag(@Nonnull CompoundTag tag, byte type) {
+        if (type == FluxConstants.NBT_SAVE_ALL) {
+            // unloaded storages are saved with the network
+            mStoragePool.reconcile();
+        }
         super.writeCustomTag(tag, type);
         if (type == FluxConstants.NBT_SAVE_ALL) {
             tag.putString("password", mPassword);
+            CompoundTag history = new CompoundTag();
+            mHistory.writeNBT(history);
+            tag.put("history", history);
         }
     }
 
@@ -347,6 +585,17 @@ public class ServerFluxNetwork extends FluxNetwork {
     public void readCustomTag(@Nonnull CompoundTag tag, byte type) {
         super.readCustomTag(tag, type);
         mPassword = tag.getString("password");
+        if (type == FluxConstants.NBT_SAVE_ALL) {
+            mHistory.readNBT(tag.getCompound("history"));
+            if (FluxConfig.enableUnloadedStorages) {
+                // no device is loaded yet
+                for (IFluxDevice device : mConnectionMap.values()) {
+                    if (device instanceof PhantomFluxDevice p && p.getDeviceType().isStorage()) {
+                        mStoragePool.addOffline(p);
+                    }
+                }
+            }
+        }
     }
 
     /*private void addToLite(IFluxDevice flux) {
@@ -0,0 +1,227 @@
+package sonar.fluxnetworks.common.connection;
+
+import sonar.fluxnetworks.common.device.FluxStorageHandler;
+import sonar.fluxnetworks.common.device.TileFluxDevice;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * All flux storages of a network as a single logical endpoint in the transfer cycle, server only.
+ * <p>
+ * The pool presents the sum of capacity, energy and transfer limit of its members. Energy moved
+ * through the pool is only accumulated, and distributed back to member storages lazily, when
+ * {@link #reconcile()} is called periodically, or before a storage is observed, saved or leaves
+ * the network. Members are charged and discharged in descending priority, as if they were still
+ * matched one by one, but individual limits only apply to the pool as a whole.
+ * <p>
+ * Storages in unloaded chunks stay in the pool as offline members, represented by their
+ * {@link PhantomFluxDevice} in the network data. Their energy is kept there and handed back
+ * to the storage when its chunk is loaded again.
+ */
+public class StoragePool {
+
+    private static final Comparator<TileFluxDevice> sDescendingOrder =
+            (lhs, rhs) -> Integer.compare(rhs.getTransferHandler().getPriority(),
+                    lhs.getTransferHandler().getPriority());
+    private static final Comparator<PhantomFluxDevice> sOfflineDescendingOrder =
+            (lhs, rhs) -> Integer.compare(getPriority(rhs), getPriority(lhs));
+
+    /**
+     * The storage list of the network.
+     */
+    private final List<TileFluxDevice> mStorages;
+    /**
+     * Storages of the network that are not loaded.
+     */
+    private final ArrayList<PhantomFluxDevice> mOffline = new ArrayList<>();
+    private final DeviceCounters mCounters;
+
+    private long mEnergy;
+    private long mCapacity;
+    private long mLimit;
+
+    /**
+     * Net energy moved through the pool that is not yet distributed to members.
+     */
+    private long mPending;
+    /**
+     * Cycles since the last distribution.
+     */
+    private int mPendingTicks;
+
+    private long mAdded;
+    private long mRemoved;
+
+    StoragePool(@Nonnull List<TileFluxDevice> storages, @Nonnull DeviceCounters counters) {
+        mStorages = storages;
+        mCounters = counters;
+    }
+
+    /**
+     * Distribute pending energy, then recompute the aggregates from members.
+     * Call this when members or their settings are changed.
+     */
+    void update() {
+        reconcile();
+        mStorages.sort(sDescendingOrder);
+        long energy = 0;
+        long capacity = 0;
+        long limit = 0;
+        for (TileFluxDevice device : mStorages) {
+            FluxStorageHandler h = (FluxStorageHandler) device.getTransferHandler();
+            energy = saturatedAdd(energy, h.getBuffer());
+            capacity = saturatedAdd(capacity, h.getMaxEnergyStorage());
+            limit = saturatedAdd(limit, h.getLimit());
+        }
+        mOffline.sort(sOfflineDescendingOrder);
+        for (PhantomFluxDevice device : mOffline) {
+            energy = saturatedAdd(energy, device.getTransferBuffer());
+            capacity = saturatedAdd(capacity, device.getCapacity());
+            limit = saturatedAdd(limit, getLimit(device));
+        }
+        mEnergy = energy;
+        mCapacity = capacity;
+        mLimit = limit;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long r = a + b;
+        // overflow iff both operands have the opposite sign of the result
+        return ((a ^ r) & (b ^ r)) < 0 ? Long.MAX_VALUE : r;
+    }
+
+    /**
+     * Logical priority of an offline storage, the same as {@link FluxStorageHandler#getPriority()}.
+     */
+    private static int getPriority(@Nonnull PhantomFluxDevice device) {
+        return (device.getSurgeMode() ? TransferHandler.PRI_GAIN_MAX : device.getRawPriority()) -
+                TransferHandler.STORAGE_PRI_DIFF;
+    }
+
+    private static long getLimit(@Nonnull PhantomFluxDevice device) {
+        return device.getDisableLimit() ? Long.MAX_VALUE : device.getRawLimit();
+    }
+
+    public boolean isEmpty() {
+        return mStorages.isEmpty() && mOffline.isEmpty();
+    }
+
+    /**
+     * Keep an unloaded storage in the pool. Call {@link #update()} after this.
+     */
+    void addOffline(@Nonnull PhantomFluxDevice device) {
+        if (!mOffline.contains(device)) {
+            reconcile();
+            mOffline.add(device);
+        }
+    }
+
+    /**
+     * Remove an unloaded storage from the pool, pending energy is distributed first, so the
+     * device holds its final energy. Call {@link #update()} after this.
+     *
+     * @return true if the device was an offline member
+     */
+    boolean removeOffline(@Nonnull PhantomFluxDevice device) {
+        if (!mOffline.contains(device)) {
+            return false;
+        }
+        reconcile();
+        mOffline.remove(device);
+        return true;
+    }
+
+    /**
+     * Remove all offline members, their phantom devices keep the energy they have.
+     */
+    void clearOffline() {
+        reconcile();
+        mOffline.clear();
+    }
+
+    void onCycleEnd() {
+        mAdded = 0;
+        mRemoved = 0;
+        mPendingTicks++;
+    }
+
+    long getRequest() {
+        return Math.max(0, Math.min(mCapacity - mEnergy, mLimit - mAdded));
+    }
+
+    void addToBuffer(long energy) {
+        mEnergy += energy;
+        mAdded += energy;
+        mPending += energy;
+    }
+
+    long removeFromBuffer(long energy) {
+        long op = Math.min(Math.min(energy, mEnergy), mLimit - mRemoved);
+        if (op <= 0) {
+            return 0;
+        }
+        mEnergy -= op;
+        mRemoved += op;
+        mPending -= op;
+        return op;
+    }
+
+    /**
+     * Distribute pending energy to members. Each member's energy change is set to its
+     * average change per tick since the last distribution.
+     */
+    public void reconcile() {
+        final int ticks = mPendingTicks;
+        if (mPending == 0 && ticks == 0) {
+            return;
+        }
+        long pending = mPending;
+        // merge loaded and offline members, both are in descending priority
+        final int size = mStorages.size();
+        final int offlineSize = mOffline.size();
+        for (int i = 0, j = 0; i < size || j < offlineSize; ) {
+            if (j == offlineSize || (i < size &&
+                    mStorages.get(i).getTransferHandler().getPriority() >= getPriority(mOffline.get(j)))) {
+                TileFluxDevice device = mStorages.get(i++);
+                FluxStorageHandler h = (FluxStorageHandler) device.getTransferHandler();
+                long delta = getDelta(pending, h.mBuffer, h.getMaxEnergyStorage());
+                h.mChange = ticks > 0 ? delta / ticks : 0;
+                if (delta != 0) {
+                    h.mBuffer += delta;
+                    pending -= delta;
+                    mCounters.record(h.mCounterSlot, delta, false, false);
+                    device.markEnergyChanged();
+                }
+            } else {
+                PhantomFluxDevice device = mOffline.get(j++);
+                long buffer = device.getTransferBuffer();
+                long delta = getDelta(pending, buffer, device.getCapacity());
+                device.setTransfer(buffer + delta, ticks > 0 ? delta / ticks : 0);
+                pending -= delta;
+            }
+        }
+        // anything left over doesn't fit into members any more, e.g. capacity was reduced
+        mEnergy -= pending;
+        mPending = 0;
+        mPendingTicks = 0;
+    }
+
+    private static long getDelta(long pending, long buffer, long capacity) {
+        if (pending > 0) {
+            return Math.min(Math.max(capacity - buffer, 0), pending);
+        } else if (pending < 0) {
+            return -Math.min(buffer, -pending);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the total energy of all members, including pending energy
+     */
+    public long getEnergy() {
+        return mEnergy;
+    }
+}
@@ -0,0 +1,145 @@
+package sonar.fluxnetworks.common.connection;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * A fixed-bucket, log-scale histogram of tick durations for each phase of a network cycle.
+ * <p>
+ * Each power of two is split into four sub-buckets, so a recorded duration is off by at most 25%.
+ * Counts are halved periodically, then percentiles follow recent ticks while tail spikes are
+ * still remembered for a while.
+ */
+public class TickHistogram {
+
+    /**
+     * Phases of a network cycle.
+     *
+     * @see ServerFluxNetwork#onEndServerTick()
+     */
+    public static final int
+            PHASE_CYCLE = 0,
+            PHASE_QUEUE = 1,
+            PHASE_CYCLE_START = 2,
+            PHASE_TRANSFER = 3,
+            PHASE_CYCLE_END = 4;
+    public static final int PHASE_COUNT = 5;
+
+    /**
+     * Indices of a snapshot in {@link #getSnapshot()} for each phase.
+     */
+    public static final int
+            P50 = 0,
+            P90 = 1,
+            P99 = 2,
+            MAX = 3;
+    public static final int SNAPSHOT_STRIDE = 4;
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // covers up to 2^42 nanoseconds, more than an hour
+    private static final int BUCKET_COUNT = 41 * SUB_BUCKET_COUNT;
+
+    private final int[] mCounts = new int[PHASE_COUNT * BUCKET_COUNT];
+    private final int[] mTotals = new int[PHASE_COUNT];
+    private final long[] mMax = new long[PHASE_COUNT];
+
+    /**
+     * Percentiles and max in nanoseconds, see {@link #SNAPSHOT_STRIDE}.
+     */
+    private final long[] mSnapshot = new long[PHASE_COUNT * SNAPSHOT_STRIDE];
+
+    static int getBucket(long nanos) {
+        if (nanos < SUB_BUCKET_COUNT) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return Math.min((exp - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return the inclusive upper bound of a bucket in nanoseconds
+     */
+    static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + sub + 1) << (exp - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public void record(int phase, long nanos) {
+        mCounts[phase * BUCKET_COUNT + getBucket(nanos)]++;
+        mTotals[phase]++;
+        if (nanos > mMax[phase]) {
+            mMax[phase] = nanos;
+        }
+    }
+
+    /**
+     * Compute the snapshot, then decay the counts by half and reset max values.
+     */
+    public void update() {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            final int offset = phase * BUCKET_COUNT;
+            final int total = mTotals[phase];
+            final int snapshot = phase * SNAPSHOT_STRIDE;
+            if (total == 0) {
+                Arrays.fill(mSnapshot, snapshot, snapshot + SNAPSHOT_STRIDE, 0);
+                continue;
+            }
+            final long p50 = (total * 50L + 99) / 100;
+            final long p90 = (total * 90L + 99) / 100;
+            final long p99 = (total * 99L + 99) / 100;
+            long seen = 0;
+            int remainder = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                final int count = mCounts[offset + i];
+                if (count == 0) {
+                    continue;
+                }
+                final long previous = seen;
+                seen += count;
+                final long bound = getUpperBound(i);
+                if (previous < p50 && seen >= p50) {
+                    mSnapshot[snapshot + P50] = bound;
+                }
+                if (previous < p90 && seen >= p90) {
+                    mSnapshot[snapshot + P90] = bound;
+                }
+                if (previous < p99 && seen >= p99) {
+                    mSnapshot[snapshot + P99] = bound;
+                }
+                remainder += mCounts[offset + i] = count >> 1;
+            }
+            // percentiles never exceed the actual max of this period
+            final long max = Math.max(mMax[phase], 1);
+            for (int i = P50; i <= P99; i++) {
+                mSnapshot[snapshot + i] = Math.min(mSnapshot[snapshot + i], max);
+            }
+            mSnapshot[snapshot + MAX] = mMax[phase];
+            mTotals[phase] = remainder;
+            mMax[phase] = 0;
+        }
+    }
+
+    /**
+     * @return percentiles and max in nanoseconds, indexed by phase * {@link #SNAPSHOT_STRIDE} + P50/P90/P99/MAX
+     */
+    @Nonnull
+    public long[] getSnapshot() {
+        return mSnapshot;
+    }
+
+    public void setSnapshot(@Nonnull long[] snapshot) {
+        if (snapshot.length == mSnapshot.length) {
+            System.arraycopy(snapshot, 0, mSnapshot, 0, snapshot.length);
+        }
+    }
+
+    public long get(int phase, int index) {
+        return mSnapshot[phase * SNAPSHOT_STRIDE + index];
+    }
+}
@@ -50,6 +50,11 @@ public abstract class TransferHandler {
     private long mLimit;
     private boolean mDisableLimit;
 
+    /**
+     * The slot in {@link DeviceCounters} of the network this handler last joined. Server only.
+     */
+    int mCounterSlot = -1;
+
     /**
      * @param limit the initial limit
      */
@@ -265,19 +270,19 @@ public abstract class TransferHandler {
     /**
      * @return true if sorting is required
      */
-    public boolean changeSettings(@Nonnull CompoundTag tag) {
+    public boolean changeSettings(@Nonnull DeviceSettings settings) {
         boolean sort = false;
-        if (tag.contains(FluxConstants.SURGE_MODE)) {
-            sort = setSurgeMode(tag.getBoolean(FluxConstants.SURGE_MODE));
+        if (settings.getSurgeMode() != null) {
+            sort = setSurgeMode(settings.getSurgeMode());
         }
-        if (tag.contains(FluxConstants.PRIORITY)) {
-            sort |= setPriority(tag.getInt(FluxConstants.PRIORITY));
+        if (settings.getPriority() != null) {
+            sort |= setPriority(settings.getPriority());
         }
-        if (tag.contains(FluxConstants.DISABLE_LIMIT)) {
-            setDisableLimit(tag.getBoolean(FluxConstants.DISABLE_LIMIT));
+        if (settings.getDisableLimit() != null) {
+            setDisableLimit(settings.getDisableLimit());
         }
-        if (tag.contains(FluxConstants.LIMIT)) {
-            setLimit(tag.getLong(FluxConstants.LIMIT));
+        if (settings.getLimit() != null) {
+            setLimit(settings.getLimit());
         }
         return sort;
     }
@@ -16,6 +16,7 @@ import sonar.fluxnetworks.common.capability.FluxPlayer;
 import sonar.fluxnetworks.common.connection.TransferHandler;
 import sonar.fluxnetworks.common.integration.CuriosIntegration;
 import sonar.fluxnetworks.common.util.EnergyUtils;
+import sonar.fluxnetworks.common.util.FluxEvents;
 import sonar.fluxnetworks.common.util.FluxUtils;
 
 import javax.annotation.Nonnull;
@@ -26,8 +27,23 @@ public class FluxControllerHandler extends TransferHandler {
 
     private static final Predicate<ItemStack> NOT_EMPTY = s -> !s.isEmpty();
 
-    private final Map<ServerPlayer, Iterable<WirelessHandler>> mPlayers = new HashMap<>();
+    /**
+     * Number of charging passes after which idle slots are checked again, in case
+     * the energy of an item is drained without touching its stack or tag.
+     */
+    private static final int IDLE_SLOT_EXPIRATION = 16;
+
+    private final Map<ServerPlayer, List<WirelessHandler>> mPlayers = new HashMap<>();
+    /**
+     * Slot states of each player, indexed by {@link WirelessType#ordinal()}, kept across player updates.
+     */
+    private final Map<UUID, SlotTracker[]> mSlotTrackers = new HashMap<>();
     private int mTimer;
+    private int mPasses;
+    private boolean mPassPending;
+
+    private int mChargedSlots;
+    private int mSkippedSlots;
 
     private long mDesired;
 
@@ -49,6 +65,16 @@ public class FluxControllerHandler extends TransferHandler {
             updatePlayers();
         }
         if ((mTimer & 0x3) == 2) {
+            if (++mPasses >= IDLE_SLOT_EXPIRATION) {
+                for (SlotTracker[] trackers : mSlotTrackers.values()) {
+                    for (SlotTracker tracker : trackers) {
+                        if (tracker != null) {
+                            tracker.expire();
+                        }
+                    }
+                }
+                mPasses = 0;
+            }
             // keep demand
             mDesired = chargeAllItems(getLimit(), true);
         }
@@ -56,7 +82,16 @@ public class FluxControllerHandler extends TransferHandler {
 
     @Override
     public void onCycleEnd() {
-        mBuffer += mChange = -sendToConsumers(Math.min(mBuffer, getLimit()));
+        if ((mTimer & 0x3) == 0) {
+            mPassPending = true;
+        }
+        // a pass deferred by the tick scheduler runs as soon as the network is no longer throttled
+        if (mPassPending && !mDevice.getNetwork().isThrottled()) {
+            mBuffer += mChange = -sendToConsumers(Math.min(mBuffer, getLimit()));
+            mPassPending = false;
+        } else {
+            mChange = 0;
+        }
         mTimer = ++mTimer & 0x3f;
     }
 
@@ -74,6 +109,7 @@ public class FluxControllerHandler extends TransferHandler {
     public void onNetworkChanged() {
         super.onNetworkChanged();
         mPlayers.clear();
+        mSlotTrackers.clear();
     }
 
     @Override
@@ -84,12 +120,23 @@ public class FluxControllerHandler extends TransferHandler {
 
     private long sendToConsumers(long energy) {
         //if (!mDevice.isActive()) return 0;
-        if ((mTimer & 0x3) != 0) return 0;
         //if (!WirelessType.ENABLE_WIRELESS.isActivated(mDevice.getNetwork())) return 0;
-        return chargeAllItems(energy, false);
+        final FluxEvents.WirelessCharge event = FluxEvents.beginWirelessCharge();
+        mChargedSlots = 0;
+        mSkippedSlots = 0;
+        long result = chargeAllItems(energy, false);
+        mDevice.getNetwork().getStatistics().addWirelessCharge(mChargedSlots, mSkippedSlots);
+        if (event != null) {
+            event.finish(mDevice.getNetworkID(), mPlayers.size(), mChargedSlots, mSkippedSlots, result);
+        }
+        return result;
     }
 
     private long chargeAllItems(long energy, boolean simulate) {
+        if (energy <= 0) {
+            // nothing to offer, don't let the items look full
+            return 0;
+        }
         long remaining = energy;
         for (var player : mPlayers.entrySet()) {
             // dead, or quit game
@@ -97,7 +144,7 @@ public class FluxControllerHandler extends TransferHandler {
                 continue;
             }
             for (WirelessHandler handler : player.getValue()) {
-                remaining = handler.chargeItems(remaining, simulate);
+                remaining = handler.chargeItems(this, remaining, simulate);
                 if (remaining <= 0) {
                     return energy;
                 }
@@ -106,8 +153,20 @@ public class FluxControllerHandler extends TransferHandler {
         return energy - remaining;
     }
 
+    @Nonnull
+    private SlotTracker getSlotTracker(@Nonnull UUID uuid, @Nonnull WirelessType type) {
+        SlotTracker[] trackers = mSlotTrackers.computeIfAbsent(uuid,
+                __ -> new SlotTracker[WirelessType.values().length]);
+        SlotTracker tracker = trackers[type.ordinal()];
+        if (tracker == null) {
+            trackers[type.ordinal()] = tracker = new SlotTracker();
+        }
+        return tracker;
+    }
+
     private void updatePlayers() {
         mPlayers.clear();
+        final Set<UUID> activeUUIDs = new HashSet<>();
 
         PlayerList playerList = ServerLifecycleHooks.getCurrentServer().getPlayerList();
         for (NetworkMember p : mDevice.getNetwork().getAllMembers()) {
@@ -130,6 +189,7 @@ public class FluxControllerHandler extends TransferHandler {
                 continue;
             }
             final Inventory inventory = player.getInventory();
+            final UUID uuid = player.getUUID();
             final List<WirelessHandler> handlers = new ArrayList<>();
             if (WirelessType.MAIN_HAND.isActivated(wirelessMode)) {
                 handlers.add(new WirelessHandler(() -> new Iterator<>() {
@@ -148,10 +208,11 @@ public class FluxControllerHandler extends TransferHandler {
                         }
                         throw new NoSuchElementException();
                     }
-                }, NOT_EMPTY));
+                }, NOT_EMPTY, getSlotTracker(uuid, WirelessType.MAIN_HAND)));
             }
             if (WirelessType.OFF_HAND.isActivated(wirelessMode)) {
-                handlers.add(new WirelessHandler(inventory.offhand, NOT_EMPTY));
+                handlers.add(new WirelessHandler(inventory.offhand, NOT_EMPTY,
+                        getSlotTracker(uuid, WirelessType.OFF_HAND)));
             }
             if (WirelessType.HOT_BAR.isActivated(wirelessMode)) {
                 handlers.add(new WirelessHandler(inventory.items.subList(0, Inventory.getSelectionSize()),
@@ -159,38 +220,105 @@ public class FluxControllerHandler extends TransferHandler {
                             ItemStack heldItem;
                             return !stack.isEmpty() &&
                                     ((heldItem = inventory.getSelected()).isEmpty() || heldItem != stack);
-                        }));
+                        }, getSlotTracker(uuid, WirelessType.HOT_BAR)));
             }
             if (WirelessType.ARMOR.isActivated(wirelessMode)) {
-                handlers.add(new WirelessHandler(inventory.armor, NOT_EMPTY));
+                handlers.add(new WirelessHandler(inventory.armor, NOT_EMPTY,
+                        getSlotTracker(uuid, WirelessType.ARMOR)));
             }
             if (WirelessType.CURIOS.isActivated(wirelessMode) && FluxNetworks.isCuriosLoaded()) {
-                handlers.add(new WirelessHandler(CuriosIntegration.getFlatStacks(player), NOT_EMPTY));
+                handlers.add(new WirelessHandler(CuriosIntegration.getFlatStacks(player), NOT_EMPTY,
+                        getSlotTracker(uuid, WirelessType.CURIOS)));
             }
             if (!handlers.isEmpty()) {
                 mPlayers.put(player, handlers);
+                activeUUIDs.add(uuid);
             }
         }
+        // forget the players that left the game or turned off wireless charging
+        mSlotTrackers.keySet().retainAll(activeUUIDs);
     }
 
     private record WirelessHandler(
             Iterable<ItemStack> stacks,
-            Predicate<ItemStack> validator) {
+            Predicate<ItemStack> validator,
+            SlotTracker tracker) {
 
-        private long chargeItems(long remaining, boolean simulate) {
+        private long chargeItems(FluxControllerHandler handler, long remaining, boolean simulate) {
+            int slot = 0;
             for (ItemStack stack : stacks) {
-                IItemEnergyConnector connector;
-                if (!validator.test(stack) || (connector = EnergyUtils.getConnector(stack)) == null) {
+                final int index = slot++;
+                if (!validator.test(stack)) {
+                    tracker.setActive(index);
                     continue;
                 }
-                if (connector.canSendTo(stack)) {
-                    remaining -= connector.sendTo(remaining, stack, simulate);
-                    if (remaining <= 0) {
-                        return 0;
+                if (tracker.isIdle(index, stack)) {
+                    if (!simulate) {
+                        handler.mSkippedSlots++;
                     }
+                    continue;
+                }
+                IItemEnergyConnector connector = EnergyUtils.getConnector(stack);
+                if (connector == null || !connector.canSendTo(stack)) {
+                    // not chargeable, wait for the stack to change
+                    tracker.setIdle(index, stack);
+                    continue;
+                }
+                long accepted = connector.sendTo(remaining, stack, simulate);
+                if (accepted <= 0) {
+                    // already full, wait for the stack to change or the energy to be drained
+                    tracker.setIdle(index, stack);
+                    continue;
+                }
+                tracker.setActive(index);
+                if (!simulate) {
+                    handler.mChargedSlots++;
+                }
+                remaining -= accepted;
+                if (remaining <= 0) {
+                    return 0;
                 }
             }
             return remaining;
         }
     }
+
+    /**
+     * Tracks the slots of a {@link WirelessHandler} that have nothing to charge. A slot is idle
+     * if it holds a stack that is either not chargeable or already full, idle slots are skipped
+     * until the stack or its tag is replaced, or the state expires, which also catches tags
+     * modified in place.
+     */
+    private static final class SlotTracker {
+
+        private ItemStack[] mIdleStacks = new ItemStack[0];
+        // identity only, hashing the tag would cost in proportion to its size, e.g. backpacks
+        private CompoundTag[] mIdleTags = new CompoundTag[0];
+
+        boolean isIdle(int slot, @Nonnull ItemStack stack) {
+            return slot < mIdleStacks.length && mIdleStacks[slot] == stack && mIdleTags[slot] == stack.getTag();
+        }
+
+        void setIdle(int slot, @Nonnull ItemStack stack) {
+            if (slot >= mIdleStacks.length) {
+                int length = Math.max(slot + 1, mIdleStacks.length << 1);
+                mIdleStacks = Arrays.copyOf(mIdleStacks, length);
+                mIdleTags = Arrays.copyOf(mIdleTags, length);
+            }
+            mIdleStacks[slot] = stack;
+            mIdleTags[slot] = stack.getTag();
+        }
+
+        void setActive(int slot) {
+            if (slot < mIdleStacks.length) {
+                mIdleStacks[slot] = null;
+                mIdleTags[slot] = null;
+            }
+        }
+
+        void expire() {
+            Arrays.fill(mIdleStacks, null);
+            Arrays.fill(mIdleTags, null);
+        }
+    }
 }
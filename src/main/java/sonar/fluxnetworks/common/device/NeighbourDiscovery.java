@@ -0,0 +1,76 @@
+package sonar.fluxnetworks.common.device;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+
+/**
+ * Resolve sides of newly loaded flux connectors in batches, server only.
+ * <p>
+ * When a region with many plugs and points loads, discovering all their neighbours in their
+ * first tick would stall that tick. Instead, connectors are queued and grouped by chunk, then
+ * resolved at the end of server ticks within a time budget, chunk by chunk, so neighbour
+ * lookups mostly hit the same {@link LevelChunk}. Each connector sends at most one block
+ * update for its first tick and its sides.
+ */
+public final class NeighbourDiscovery {
+
+    /**
+     * The time budget per server tick, at least one chunk is processed per tick.
+     */
+    private static final long BUDGET_NANOS = 2_000_000;
+
+    private static final Object2ObjectLinkedOpenHashMap<ChunkKey, ArrayList<TileFluxConnector>> sQueue =
+            new Object2ObjectLinkedOpenHashMap<>();
+
+    private NeighbourDiscovery() {
+    }
+
+    static void enqueue(@Nonnull TileFluxConnector device) {
+        final ChunkKey key = new ChunkKey((ServerLevel) device.getLevel(),
+                ChunkPos.asLong(device.getBlockPos()));
+        ArrayList<TileFluxConnector> devices = sQueue.get(key);
+        if (devices == null) {
+            devices = new ArrayList<>();
+            sQueue.put(key, devices);
+        }
+        devices.add(device);
+    }
+
+    /**
+     * Resolve queued connectors, called at the end of a server tick before networks tick.
+     */
+    public static void process() {
+        if (sQueue.isEmpty()) {
+            return;
+        }
+        final long deadline = System.nanoTime() + BUDGET_NANOS;
+        do {
+            final ChunkKey key = sQueue.firstKey();
+            final ArrayList<TileFluxConnector> devices = sQueue.removeFirst();
+            final LevelChunk chunk = key.level.getChunkSource().getChunkNow(
+                    ChunkPos.getX(key.pos), ChunkPos.getZ(key.pos));
+            if (chunk == null) {
+                // unloaded already, so are the devices
+                continue;
+            }
+            for (TileFluxConnector device : devices) {
+                if (!device.isRemoved()) {
+                    device.discoverNeighbours(chunk);
+                }
+            }
+        } while (!sQueue.isEmpty() && System.nanoTime() < deadline);
+    }
+
+    // called when the server stopped
+    public static void clear() {
+        sQueue.clear();
+    }
+
+    private record ChunkKey(ServerLevel level, long pos) {
+    }
+}
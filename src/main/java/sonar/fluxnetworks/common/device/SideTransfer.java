@@ -4,6 +4,7 @@ import net.minecraft.core.Direction;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import sonar.fluxnetworks.api.energy.IBlockEnergyConnector;
+import sonar.fluxnetworks.common.util.FluxEvents;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -38,10 +39,14 @@ public class SideTransfer {
             return 0;
         }
         if (mAdapter.canSendTo(mTarget, mSide)) {
+            final FluxEvents.CapabilitySend event = FluxEvents.beginCapabilitySend();
             long op = mAdapter.sendTo(amount, mTarget, mSide, simulate);
             if (!simulate) {
                 mChange -= op;
             }
+            if (event != null) {
+                event.finish(mSide.getSerializedName(), amount, op, simulate);
+            }
             return op;
         }
         return 0;
@@ -2,10 +2,13 @@ package sonar.fluxnetworks.common.device;
 
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
 import sonar.fluxnetworks.common.block.FluxConnectorBlock;
 import sonar.fluxnetworks.common.util.FluxUtils;
 
@@ -27,12 +30,38 @@ public abstract class TileFluxConnector extends TileFluxDevice {
         super.onFirstTick();
         //noinspection ConstantConditions
         if (!level.isClientSide) {
-            int newState = 0;
-            for (Direction direction : FluxUtils.DIRECTIONS) {
-                BlockEntity target = level.getBlockEntity(worldPosition.relative(direction));
-                newState |= getTransferHandler().updateSideTransfer(direction, target, false);
+            // sides are resolved later in a batch, the block update waits for them
+            mFlags |= FLAG_SIDES_PENDING;
+            NeighbourDiscovery.enqueue(this);
+        }
+    }
+
+    /**
+     * Resolve all sides, called by {@link NeighbourDiscovery}.
+     *
+     * @param chunk the chunk this device is in
+     */
+    void discoverNeighbours(@Nonnull LevelChunk chunk) {
+        assert level != null && !level.isClientSide;
+        final ChunkPos chunkPos = chunk.getPos();
+        int newState = 0;
+        for (Direction direction : FluxUtils.DIRECTIONS) {
+            BlockPos pos = worldPosition.relative(direction);
+            final BlockEntity target;
+            if (SectionPos.blockToSectionCoord(pos.getX()) == chunkPos.x &&
+                    SectionPos.blockToSectionCoord(pos.getZ()) == chunkPos.z) {
+                target = level.isOutsideBuildHeight(pos) ? null :
+                        chunk.getBlockEntity(pos, LevelChunk.EntityCreationType.IMMEDIATE);
+            } else {
+                target = level.getBlockEntity(pos);
             }
-            sendBlockUpdateIfNeeded(newState);
+            newState |= getTransferHandler().updateSideTransfer(direction, target, false);
+        }
+        mFlags &= ~FLAG_SIDES_PENDING;
+        if ((mFlags & SIDES_CONNECTED_MASK) != newState) {
+            mFlags = (mFlags & ~SIDES_CONNECTED_MASK) | newState;
+            // sent in the next tick, along with other changes
+            mFlags |= FLAG_SETTING_CHANGED;
         }
     }
 
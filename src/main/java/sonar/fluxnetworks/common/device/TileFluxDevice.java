@@ -81,6 +81,7 @@ public abstract class TileFluxDevice extends BlockEntity implements IFluxDevice
     protected static final int FLAG_FIRST_TICKED = 0x80; // server
     protected static final int FLAG_SETTING_CHANGED = 0x100; // server
     protected static final int FLAG_ENERGY_CHANGED = 0x200; // server
+    protected static final int FLAG_SIDES_PENDING = 0x400; // server
 
     /**
      * Lower 6 bits represent sides connected. Non-persisted value.
@@ -113,10 +114,7 @@ public abstract class TileFluxDevice extends BlockEntity implements IFluxDevice
         if (!level.isClientSide && (mFlags & FLAG_FIRST_TICKED) != 0) {
             mNetwork.enqueueConnectionRemoval(this, false);
             if (isForcedLoading()) {
-                //FluxChunkManager.removeChunkLoader(this);
-                long chunkPos = ChunkPos.asLong(worldPosition);
-                ForgeChunkManager.forceChunk((ServerLevel) level, FluxNetworks.MODID, worldPosition,
-                        ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos), false, true);
+                FluxNetworkData.getChunkManager().removeLoader(this);
             }
             getTransferHandler().onNetworkChanged();
             mFlags &= ~FLAG_FIRST_TICKED;
@@ -136,10 +134,14 @@ public abstract class TileFluxDevice extends BlockEntity implements IFluxDevice
     // server tick, before network tick
     protected void onServerTick() {
         if ((mFlags & FLAG_FIRST_TICKED) == 0) {
+            if (isForcedLoading()) {
+                migrateChunkLoading();
+            }
             onFirstTick();
             mFlags |= FLAG_FIRST_TICKED;
         }
-        if ((mFlags & FLAG_SETTING_CHANGED) != 0) {
+        // wait for sides, then send them together
+        if ((mFlags & (FLAG_SETTING_CHANGED | FLAG_SIDES_PENDING)) == FLAG_SETTING_CHANGED) {
             sendBlockUpdate();
             mFlags &= ~FLAG_SETTING_CHANGED;
         } else if (mPlayerUsing != null) {
@@ -152,6 +154,67 @@ public abstract class TileFluxDevice extends BlockEntity implements IFluxDevice
         connect(FluxNetworkData.getNetwork(mNetworkID));
     }
 
+    /**
+     * Apply settings to this device. Server only.
+     *
+     * @param settings the decoded settings
+     * @return true if the network needs to sort its devices
+     * @see ServerFluxNetwork#applySettings(Iterable, DeviceSettings)
+     */
+    public boolean applySettings(@Nonnull DeviceSettings settings) {
+        assert level != null && !level.isClientSide;
+        if (settings.isEmpty()) {
+            return false;
+        }
+        if (settings.getCustomName() != null) {
+            mCustomName = settings.getCustomName();
+        }
+        boolean sort = getTransferHandler().changeSettings(settings);
+        if (settings.getForcedLoading() != null) {
+            boolean load = settings.getForcedLoading() &&
+                    FluxConfig.enableChunkLoading && !getDeviceType().isStorage();
+            final ChunkLoadingManager manager = FluxNetworkData.getChunkManager();
+            if (load) {
+                load = manager.addLoader(this);
+            } else {
+                manager.removeLoader(this);
+            }
+            setForcedLoading(load);
+        }
+        // notify listeners
+        mFlags |= FLAG_SETTING_CHANGED;
+        markChunkUnsaved();
+        return sort;
+    }
+
+    /**
+     * Apply settings edited by a player to this device, and sort its network if needed. Server only.
+     *
+     * @param settings the decoded settings
+     */
+    public void editSettings(@Nonnull DeviceSettings settings) {
+        if (applySettings(settings) && mNetwork.isValid()) {
+            ((ServerFluxNetwork) mNetwork).markSortConnections();
+        }
+    }
+
+    /**
+     * Move a chunk ticket of older versions, kept by the Forge chunk manager, to our chunk loading manager.
+     */
+    private void migrateChunkLoading() {
+        final ChunkLoadingManager manager = FluxNetworkData.getChunkManager();
+        if (!manager.isLoader(this)) {
+            // chunk loading may have been disabled since the device was saved
+            final boolean load = FluxConfig.enableChunkLoading && !getDeviceType().isStorage();
+            setForcedLoading(load && manager.addLoader(this));
+            long chunkPos = ChunkPos.asLong(worldPosition);
+            ForgeChunkManager.forceChunk((ServerLevel) level, FluxNetworks.MODID, worldPosition,
+                    ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos), false, true);
+            mFlags |= FLAG_SETTING_CHANGED;
+            markChunkUnsaved();
+        }
+    }
+
     /**
      * Called when a player interacts with this device.
      *
@@ -197,6 +260,10 @@ public abstract class TileFluxDevice extends BlockEntity implements IFluxDevice
             mNetwork.enqueueConnectionRemoval(this, false);
             mNetwork = network;
             mNetworkID = mNetwork.getNetworkID();
+            if (isForcedLoading()) {
+                // update the network of the chunk loader
+                setForcedLoading(FluxNetworkData.getChunkManager().addLoader(this));
+            }
             getTransferHandler().onNetworkChanged();
             // notify listeners
             mFlags |= FLAG_SETTING_CHANGED;
@@ -306,30 +373,7 @@ public abstract class TileFluxDevice extends BlockEntity implements IFluxDevice
     public void readCustomTag(@Nonnull CompoundTag tag, byte type) {
         if (type == FluxConstants.NBT_TILE_SETTINGS) {
             assert !level.isClientSide;
-            if (tag.isEmpty()) {
-                return;
-            }
-            if (tag.contains(FluxConstants.CUSTOM_NAME)) {
-                String name = tag.getString(FluxConstants.CUSTOM_NAME);
-                if (name.length() <= MAX_CUSTOM_NAME_LENGTH) {
-                    mCustomName = name;
-                }
-            }
-            boolean sort = getTransferHandler().changeSettings(tag);
-            if (sort && mNetwork.isValid()) {
-                ((ServerFluxNetwork) mNetwork).markSortConnections();
-            }
-            if (tag.contains(FluxConstants.FORCED_LOADING)) {
-                boolean load = tag.getBoolean(FluxConstants.FORCED_LOADING) &&
-                        FluxConfig.enableChunkLoading && !getDeviceType().isStorage();
-                long chunkPos = ChunkPos.asLong(worldPosition);
-                ForgeChunkManager.forceChunk((ServerLevel) level, FluxNetworks.MODID, worldPosition,
-                        ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos), load, true);
-                setForcedLoading(load);
-            }
-            // notify listeners
-            mFlags |= FLAG_SETTING_CHANGED;
-            markChunkUnsaved();
+            editSettings(new DeviceSettings(tag));
             return;
         }
         mNetworkID = tag.getInt(FluxConstants.NETWORK_ID);
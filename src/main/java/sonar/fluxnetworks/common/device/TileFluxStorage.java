@@ -2,12 +2,14 @@ package sonar.fluxnetworks.common.device;
 
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockState;
 import sonar.fluxnetworks.api.FluxConstants;
 import sonar.fluxnetworks.api.device.FluxDeviceType;
 import sonar.fluxnetworks.api.device.IFluxStorage;
+import sonar.fluxnetworks.common.connection.ServerFluxNetwork;
 import sonar.fluxnetworks.common.util.FluxGuiStack;
 import sonar.fluxnetworks.register.*;
 
@@ -101,28 +103,71 @@ public abstract class TileFluxStorage extends TileFluxDevice implements IFluxSto
      * Make this storage full of energy (debug or admin function).
      */
     public void fillUp() {
+        reconcileEnergy();
         mHandler.fillUp();
+        if (getNetwork() instanceof ServerFluxNetwork network) {
+            // the storage pool sums up energy again
+            network.markSortConnections();
+        }
         // this may happen without a valid network, so force to sync
         mFlags |= FLAG_ENERGY_CHANGED;
     }
 
     /**
-     * Write data for client
+     * Energy of storages is pooled by the network and distributed lazily,
+     * make the buffer up-to-date before it is observed.
+     */
+    private void reconcileEnergy() {
+        //noinspection ConstantConditions
+        if (!level.isClientSide && getNetwork() instanceof ServerFluxNetwork network) {
+            network.reconcileStorages();
+        }
+    }
+
+    @Override
+    public void writeCustomTag(@Nonnull CompoundTag tag, byte type) {
+        if (level != null) {
+            reconcileEnergy();
+        }
+        super.writeCustomTag(tag, type);
+    }
+
+    @Override
+    public void writePacketBuffer(FriendlyByteBuf buf, byte type) {
+        reconcileEnergy();
+        super.writePacketBuffer(buf, type);
+    }
+
+    /**
+     * Write data for client. The tag is replaced rather than modified when the data changed,
+     * because the item renderer caches render states by tag identity.
      *
      * @return item stack with NBT
      * @see sonar.fluxnetworks.client.render.FluxStorageItemRenderer
      */
     @Nonnull
     protected ItemStack writeToDisplayStack(@Nonnull ItemStack stack) {
-        CompoundTag subTag = stack.getOrCreateTagElement(FluxConstants.TAG_FLUX_DATA);
         //noinspection ConstantConditions
-        if (level.isClientSide)
-            stack.getOrCreateTag().putBoolean(FluxConstants.FLUX_COLOR, true);
-        else {
-            stack.getOrCreateTag().putBoolean(FluxConstants.FLUX_COLOR, false);
-            subTag.putInt(FluxConstants.CLIENT_COLOR, getNetwork().getNetworkColor());
+        final boolean clientSide = level.isClientSide;
+        final int color = clientSide ? 0 : getNetwork().getNetworkColor();
+        final long energy = getTransferBuffer();
+        CompoundTag tag = stack.getTag();
+        if (tag != null && tag.getBoolean(FluxConstants.FLUX_COLOR) == clientSide) {
+            CompoundTag subTag = tag.getCompound(FluxConstants.TAG_FLUX_DATA);
+            if (subTag.getLong(FluxConstants.ENERGY) == energy &&
+                    (clientSide || subTag.getInt(FluxConstants.CLIENT_COLOR) == color)) {
+                return stack;
+            }
+        }
+        tag = new CompoundTag();
+        CompoundTag subTag = new CompoundTag();
+        tag.putBoolean(FluxConstants.FLUX_COLOR, clientSide);
+        if (!clientSide) {
+            subTag.putInt(FluxConstants.CLIENT_COLOR, color);
         }
-        subTag.putLong(FluxConstants.ENERGY, getTransferBuffer());
+        subTag.putLong(FluxConstants.ENERGY, energy);
+        tag.put(FluxConstants.TAG_FLUX_DATA, subTag);
+        stack.setTag(tag);
         return stack;
     }
 
@@ -0,0 +1,180 @@
+package sonar.fluxnetworks.common.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import javax.annotation.Nonnull;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Formats energy numbers for display, the results are the same as {@link NumberFormat#getInstance()}
+ * and {@code String.format("%.1f")} in the default locale.
+ * <p>
+ * Each thread has its own formatter, which caches the symbols of the current locale, builds strings
+ * in a reused buffer, and memoizes recently formatted values, so that formatting the same values
+ * every frame returns the same strings without allocation.
+ *
+ * @see sonar.fluxnetworks.api.energy.EnergyType
+ */
+public final class EnergyFormat {
+
+    private static final double[] COMPACT_SCALE = new double[]{0.001D, 0.000_001D, 0.000_000_001D, 0.000_000_000_001D,
+            0.000_000_000_000_001D, 0.000_000_000_000_000_001D};
+
+    private static final byte GROUPED = 0;
+    private static final byte COMPACT = 1;
+
+    // direct mapped, power of two
+    private static final int MEMO_SIZE = 128;
+
+    private static final ThreadLocal<EnergyFormat> sFormatter = ThreadLocal.withInitial(EnergyFormat::new);
+
+    private Locale mLocale;
+    private char mZeroDigit;
+    private String mNegativePrefix;
+    private char mDecimalSeparator;
+    private char mGroupingSeparator;
+    // 0 if grouping is not used
+    private int mGroupingSize;
+
+    private final StringBuilder mBuilder = new StringBuilder(32);
+    private final char[] mDigits = new char[40];
+
+    private final long[] mMemoValues = new long[MEMO_SIZE];
+    private final byte[] mMemoStyles = new byte[MEMO_SIZE];
+    private final String[] mMemoSuffixes = new String[MEMO_SIZE];
+    private final String[] mMemoResults = new String[MEMO_SIZE];
+
+    private EnergyFormat() {
+    }
+
+    /**
+     * Format with grouping separators, like "1,234,567 FE".
+     *
+     * @param in     value in
+     * @param suffix the unit, separated by a space
+     * @return grouped string
+     */
+    @Nonnull
+    public static String format(long in, @Nonnull String suffix) {
+        return sFormatter.get().get(in, GROUPED, suffix);
+    }
+
+    /**
+     * Compact format (like 3.5M)
+     *
+     * @param in value in
+     * @return compact string
+     */
+    @Nonnull
+    public static String compact(long in) {
+        return sFormatter.get().get(in, COMPACT, "");
+    }
+
+    /**
+     * Compact format with a unit (like 3.5 MFE)
+     *
+     * @param in     value in
+     * @param suffix the unit, separated by a space
+     * @return compact string
+     */
+    @Nonnull
+    public static String compact(long in, @Nonnull String suffix) {
+        return sFormatter.get().get(in, COMPACT, suffix);
+    }
+
+    @Nonnull
+    private String get(long in, byte style, @Nonnull String suffix) {
+        final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        if (locale != mLocale) {
+            setLocale(locale);
+        }
+        final int index = HashCommon.mix(Long.hashCode(in) * 31 + suffix.hashCode() + style) & (MEMO_SIZE - 1);
+        String result = mMemoResults[index];
+        if (result != null && mMemoValues[index] == in && mMemoStyles[index] == style) {
+            final String s = mMemoSuffixes[index];
+            if (s == suffix || s.equals(suffix)) {
+                return result;
+            }
+        }
+        final StringBuilder sb = mBuilder;
+        sb.setLength(0);
+        if (style == GROUPED) {
+            appendGrouped(in);
+            sb.append(' ').append(suffix);
+        } else if (in < 1000) {
+            sb.append(in);
+            if (!suffix.isEmpty()) {
+                sb.append(' ').append(suffix);
+            }
+        } else {
+            int level = (int) (Math.log10(in) / 3) - 1;
+            appendTenths(Math.round(in * COMPACT_SCALE[level] * 10));
+            if (!suffix.isEmpty()) {
+                sb.append(' ');
+            }
+            sb.append("kMGTPE".charAt(level)).append(suffix);
+        }
+        result = sb.toString();
+        mMemoValues[index] = in;
+        mMemoStyles[index] = style;
+        mMemoSuffixes[index] = suffix;
+        mMemoResults[index] = result;
+        return result;
+    }
+
+    private void setLocale(@Nonnull Locale locale) {
+        final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        mZeroDigit = symbols.getZeroDigit();
+        mDecimalSeparator = symbols.getDecimalSeparator();
+        mGroupingSeparator = symbols.getGroupingSeparator();
+        if (NumberFormat.getInstance(locale) instanceof DecimalFormat format) {
+            mNegativePrefix = format.getNegativePrefix();
+            mGroupingSize = format.isGroupingUsed() ? format.getGroupingSize() : 0;
+        } else {
+            mNegativePrefix = String.valueOf(symbols.getMinusSign());
+            mGroupingSize = 0;
+        }
+        mLocale = locale;
+        // results of the previous locale
+        Arrays.fill(mMemoResults, null);
+        Arrays.fill(mMemoSuffixes, null);
+    }
+
+    private void appendGrouped(long in) {
+        final char[] digits = mDigits;
+        int pos = digits.length;
+        // negative to cover Long.MIN_VALUE
+        long v = in < 0 ? in : -in;
+        int count = 0;
+        do {
+            if (mGroupingSize > 0 && count > 0 && count % mGroupingSize == 0) {
+                digits[--pos] = mGroupingSeparator;
+            }
+            digits[--pos] = (char) (mZeroDigit - (int) (v % 10));
+            v /= 10;
+            count++;
+        } while (v != 0);
+        if (in < 0) {
+            mBuilder.append(mNegativePrefix);
+        }
+        mBuilder.append(digits, pos, digits.length - pos);
+    }
+
+    // non-negative, e.g. 35 -> "3.5"
+    private void appendTenths(long tenths) {
+        final char[] digits = mDigits;
+        int pos = digits.length;
+        digits[--pos] = (char) (mZeroDigit + (int) (tenths % 10));
+        digits[--pos] = mDecimalSeparator;
+        long v = tenths / 10;
+        do {
+            digits[--pos] = (char) (mZeroDigit + (int) (v % 10));
+            v /= 10;
+        } while (v != 0);
+        mBuilder.append(digits, pos, digits.length - pos);
+    }
+}
@@ -3,19 +3,31 @@ package sonar.fluxnetworks.common.util;
 import com.mojang.authlib.GameProfile;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.commands.arguments.GameProfileArgument;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.players.GameProfileCache;
 import net.minecraft.server.players.PlayerList;
 import sonar.fluxnetworks.FluxConfig;
 import sonar.fluxnetworks.FluxNetworks;
+import sonar.fluxnetworks.api.energy.EnergyType;
 import sonar.fluxnetworks.common.capability.FluxPlayer;
+import sonar.fluxnetworks.common.connection.AccessCache;
+import sonar.fluxnetworks.common.connection.ChunkLoadingManager;
+import sonar.fluxnetworks.common.connection.DeviceCounters;
+import sonar.fluxnetworks.common.connection.FluxNetwork;
+import sonar.fluxnetworks.common.connection.FluxNetworkData;
+import sonar.fluxnetworks.common.connection.TickHistogram;
+import sonar.fluxnetworks.register.MessageQueue;
 import sonar.fluxnetworks.register.Messages;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
+import java.util.List;
 
 public class FluxCommands {
 
@@ -32,9 +44,133 @@ public class FluxCommands {
                                 )
                         )
                 )
+                .then(Commands.literal("top")
+                        .requires(s -> s.hasPermission(2))
+                        .then(Commands.argument("network", IntegerArgumentType.integer(1))
+                                .then(topDevices("throughput", DeviceCounters.SORT_THROUGHPUT))
+                                .then(topDevices("starved", DeviceCounters.SORT_STARVED))
+                                .then(topDevices("limited", DeviceCounters.SORT_LIMITED))
+                        )
+                )
+                .then(Commands.literal("profile")
+                        .requires(s -> s.hasPermission(2))
+                        .then(Commands.argument("network", IntegerArgumentType.integer(1))
+                                .executes(s -> profile(s.getSource(),
+                                        IntegerArgumentType.getInteger(s, "network")))
+                        )
+                )
+                .then(Commands.literal("chunks")
+                        .requires(s -> s.hasPermission(2))
+                        .executes(s -> chunks(s.getSource()))
+                )
+                .then(Commands.literal("access")
+                        .requires(s -> s.hasPermission(2))
+                        .executes(s -> access(s.getSource()))
+                )
+                .then(Commands.literal("messages")
+                        .requires(s -> s.hasPermission(2))
+                        .executes(s -> messages(s.getSource()))
+                )
         );
     }
 
+    @Nonnull
+    private static LiteralArgumentBuilder<CommandSourceStack> topDevices(@Nonnull String name, int sort) {
+        return Commands.literal(name)
+                .executes(s -> topDevices(s.getSource(),
+                        IntegerArgumentType.getInteger(s, "network"), sort, 10))
+                .then(Commands.argument("count", IntegerArgumentType.integer(1, 100))
+                        .executes(s -> topDevices(s.getSource(),
+                                IntegerArgumentType.getInteger(s, "network"), sort,
+                                IntegerArgumentType.getInteger(s, "count")))
+                );
+    }
+
+    private static final String[] TICK_PHASES = {"cycle", "queue", "cycleStart", "transfer", "cycleEnd"};
+
+    private static int profile(@Nonnull CommandSourceStack source, int networkID) {
+        final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
+        if (!network.isValid()) {
+            source.sendFailure(Component.literal("Network " + networkID + " does not exist"));
+            return 0;
+        }
+        final TickHistogram histogram = network.getStatistics().tickHistogram;
+        source.sendSuccess(() -> Component.literal(network.getNetworkName() + " (" + networkID + "): " +
+                "p50 / p90 / p99 / max (\u00b5s)"), false);
+        for (int phase = 0; phase < TickHistogram.PHASE_COUNT; phase++) {
+            final String line = TICK_PHASES[phase] + ": " +
+                    histogram.get(phase, TickHistogram.P50) / 1000 + " / " +
+                    histogram.get(phase, TickHistogram.P90) / 1000 + " / " +
+                    histogram.get(phase, TickHistogram.P99) / 1000 + " / " +
+                    histogram.get(phase, TickHistogram.MAX) / 1000;
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        return 1;
+    }
+
+    private static int chunks(@Nonnull CommandSourceStack source) {
+        final ChunkLoadingManager manager = FluxNetworkData.getChunkManager();
+        final int count = manager.getChunkCount();
+        source.sendSuccess(() -> Component.literal(count + " chunks loaded by flux devices"), false);
+        for (var e : manager.getAllNetworkChunks().int2IntEntrySet()) {
+            final FluxNetwork network = FluxNetworkData.getNetwork(e.getIntKey());
+            final String name = network.isValid() ? network.getNetworkName() : "No network";
+            source.sendSuccess(() -> Component.literal(name + " (" + e.getIntKey() + "): " +
+                    e.getIntValue() + " chunks"), false);
+        }
+        final GameProfileCache profiles = source.getServer().getProfileCache();
+        for (var e : manager.getAllOwnerChunks().object2IntEntrySet()) {
+            final String name = profiles == null ? e.getKey().toString() : profiles.get(e.getKey())
+                    .map(GameProfile::getName).orElseGet(() -> e.getKey().toString());
+            source.sendSuccess(() -> Component.literal(name + ": " + e.getIntValue() + " chunks"), false);
+        }
+        return count;
+    }
+
+    private static int access(@Nonnull CommandSourceStack source) {
+        final AccessCache cache = FluxNetworkData.getAccessCache();
+        final long hits = cache.getHits();
+        final long total = hits + cache.getMisses();
+        final int size = cache.size();
+        source.sendSuccess(() -> Component.literal("Access cache: " + size + " entries, " +
+                hits + " / " + total + " hits" +
+                (total > 0 ? String.format(" (%.1f%%)", hits * 100.0 / total) : "")), false);
+        return size;
+    }
+
+    private static int messages(@Nonnull CommandSourceStack source) {
+        final int depth = MessageQueue.getDepth();
+        source.sendSuccess(() -> Component.literal("Message queue: " + depth + " queued, " +
+                MessageQueue.getPeakDepth() + " peak, " +
+                MessageQueue.getExecutedCount() + " handled, " +
+                MessageQueue.getDeferredCount() + " deferred, " +
+                MessageQueue.getFloodCount() + " floods, " +
+                Messages.getCoalescedEditCount() + " edits coalesced"), false);
+        return depth;
+    }
+
+    private static int topDevices(@Nonnull CommandSourceStack source, int networkID, int sort, int count) {
+        final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
+        final DeviceCounters counters = network.getDeviceCounters();
+        if (!network.isValid() || counters == null) {
+            source.sendFailure(Component.literal("Network " + networkID + " does not exist"));
+            return 0;
+        }
+        final List<DeviceCounters.Entry> entries = counters.getTop(count, sort);
+        source.sendSuccess(() -> Component.literal(network.getNetworkName() + " (" + networkID + "): " +
+                entries.size() + " devices"), false);
+        for (DeviceCounters.Entry e : entries) {
+            String name = e.customName().isEmpty() ? "" : e.customName() + " ";
+            source.sendSuccess(() -> Component.literal(name + FluxUtils.getDisplayPos(e.pos()) + " " +
+                    FluxUtils.getDisplayDim(e.pos()) +
+                    ": in " + EnergyType.FE.getStorage(e.energyIn()) +
+                    ", out " + EnergyType.FE.getStorage(e.energyOut()) +
+                    ", starved " + e.starvedTicks() + " t" +
+                    ", limited " + e.limitedTicks() + " t"), false);
+        }
+        return entries.size();
+    }
+
     private static int superAdmin(@Nonnull CommandSourceStack source,
                                   @Nonnull Collection<GameProfile> profiles, boolean enable) {
         PlayerList playerList = source.getServer().getPlayerList();
@@ -48,6 +184,7 @@ public class FluxCommands {
                         (((fp.isSuperAdmin() || FluxConfig.enableSuperAdmin) && source.hasPermission(3)) ||
                                 (player == source.getEntity() && (fp.isSuperAdmin() || FluxPlayer.canActivateSuperAdmin(player)))) &&
                         fp.setSuperAdmin(enable)) {
+                    FluxNetworkData.getAccessCache().invalidatePlayer(player.getUUID());
                     Messages.syncCapability(player);
                     player.sendSystemMessage(Component.translatable(enable ?
                             "gui.fluxnetworks.superadmin.on" : "gui.fluxnetworks.superadmin.off"));
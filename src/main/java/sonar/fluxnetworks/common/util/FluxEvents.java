@@ -0,0 +1,276 @@
+package sonar.fluxnetworks.common.util;
+
+import jdk.jfr.*;
+import net.minecraft.network.FriendlyByteBuf;
+import sonar.fluxnetworks.FluxConfig;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Custom Java Flight Recorder events, shown under the "Flux Networks" category in JDK Mission Control.
+ * <p>
+ * Events are only created when {@link FluxConfig#enableFlightRecorder} is true, otherwise each
+ * {@code begin} method returns null and nothing is allocated. Events that are not enabled in the
+ * running recording, or shorter than their threshold, are dropped by JFR itself.
+ */
+public final class FluxEvents {
+
+    private static final String CATEGORY = "Flux Networks";
+
+    private FluxEvents() {
+    }
+
+    @Nullable
+    public static NetworkTick beginNetworkTick() {
+        if (!FluxConfig.enableFlightRecorder) {
+            return null;
+        }
+        NetworkTick event = new NetworkTick();
+        event.begin();
+        return event;
+    }
+
+    @Nullable
+    public static CapabilitySend beginCapabilitySend() {
+        if (!FluxConfig.enableFlightRecorder) {
+            return null;
+        }
+        CapabilitySend event = new CapabilitySend();
+        event.begin();
+        return event;
+    }
+
+    @Nullable
+    public static DataSave beginDataSave() {
+        if (!FluxConfig.enableFlightRecorder) {
+            return null;
+        }
+        DataSave event = new DataSave();
+        event.begin();
+        return event;
+    }
+
+    @Nullable
+    public static MessageDecode beginMessageDecode(int index, @Nonnull FriendlyByteBuf payload,
+                                                   boolean clientbound) {
+        if (!FluxConfig.enableFlightRecorder) {
+            return null;
+        }
+        MessageDecode event = new MessageDecode();
+        event.index = index;
+        event.bytes = payload.readableBytes();
+        event.clientbound = clientbound;
+        event.begin();
+        return event;
+    }
+
+    @Nullable
+    public static MessageSend beginMessageSend(@Nonnull FriendlyByteBuf payload, boolean clientbound) {
+        if (!FluxConfig.enableFlightRecorder) {
+            return null;
+        }
+        MessageSend event = new MessageSend();
+        // the index is the first short, see Channel.buffer()
+        event.index = payload.getShort(payload.readerIndex());
+        event.bytes = payload.readableBytes();
+        event.clientbound = clientbound;
+        event.begin();
+        return event;
+    }
+
+    @Nullable
+    public static WirelessCharge beginWirelessCharge() {
+        if (!FluxConfig.enableFlightRecorder) {
+            return null;
+        }
+        WirelessCharge event = new WirelessCharge();
+        event.begin();
+        return event;
+    }
+
+    @Name("fluxnetworks.NetworkTick")
+    @Label("Network Tick")
+    @Category(CATEGORY)
+    @Description("A transfer cycle of a flux network")
+    @StackTrace(false)
+    public static final class NetworkTick extends Event {
+
+        @Label("Network ID")
+        int networkID;
+        @Label("Devices")
+        int devices;
+        @Label("Plugs")
+        int plugs;
+        @Label("Points")
+        int points;
+        @Label("Energy Moved")
+        @Description("Energy moved from plugs to points in the transfer phase")
+        long energy;
+        @Label("Connection Queue")
+        @Timespan
+        long queueTime;
+        @Label("Cycle Start")
+        @Timespan
+        long cycleStartTime;
+        @Label("Transfer")
+        @Timespan
+        long transferTime;
+        @Label("Cycle End")
+        @Timespan
+        long cycleEndTime;
+
+        public void finish(int networkID, int devices, int plugs, int points, long energy,
+                           long queueTime, long cycleStartTime, long transferTime, long cycleEndTime) {
+            end();
+            if (shouldCommit()) {
+                this.networkID = networkID;
+                this.devices = devices;
+                this.plugs = plugs;
+                this.points = points;
+                this.energy = energy;
+                this.queueTime = queueTime;
+                this.cycleStartTime = cycleStartTime;
+                this.transferTime = transferTime;
+                this.cycleEndTime = cycleEndTime;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Capability sends are frequent, only slow ones are recorded by default.
+     */
+    @Name("fluxnetworks.CapabilitySend")
+    @Label("Capability Send")
+    @Category(CATEGORY)
+    @Description("Energy sent from a flux device to an adjacent block")
+    @Threshold("50 us")
+    @StackTrace(false)
+    public static final class CapabilitySend extends Event {
+
+        @Label("Side")
+        String side;
+        @Label("Requested")
+        long requested;
+        @Label("Energy Moved")
+        long energy;
+        @Label("Simulate")
+        boolean simulate;
+
+        public void finish(@Nonnull String side, long requested, long energy, boolean simulate) {
+            end();
+            if (shouldCommit()) {
+                this.side = side;
+                this.requested = requested;
+                this.energy = energy;
+                this.simulate = simulate;
+                commit();
+            }
+        }
+    }
+
+    @Name("fluxnetworks.DataSave")
+    @Label("Network Data Save")
+    @Category(CATEGORY)
+    @Description("Serialization of all flux networks to the world save")
+    public static final class DataSave extends Event {
+
+        @Label("Networks")
+        int networks;
+        @Label("Loaded Devices")
+        int devices;
+
+        public void finish(int networks, int devices) {
+            end();
+            if (shouldCommit()) {
+                this.networks = networks;
+                this.devices = devices;
+                commit();
+            }
+        }
+    }
+
+    @Name("fluxnetworks.MessageDecode")
+    @Label("Message Decode")
+    @Category(CATEGORY)
+    @Description("Decoding of a received message on the network thread")
+    @StackTrace(false)
+    public static final class MessageDecode extends Event {
+
+        @Label("Index")
+        int index;
+        @Label("Size")
+        @DataAmount
+        int bytes;
+        @Label("Clientbound")
+        boolean clientbound;
+        @Label("Failed")
+        boolean failed;
+
+        public void finish(boolean failed) {
+            end();
+            if (shouldCommit()) {
+                this.failed = failed;
+                commit();
+            }
+        }
+    }
+
+    @Name("fluxnetworks.MessageSend")
+    @Label("Message Send")
+    @Category(CATEGORY)
+    @Description("Dispatch of an encoded message to the connections")
+    @StackTrace(false)
+    public static final class MessageSend extends Event {
+
+        @Label("Index")
+        int index;
+        @Label("Size")
+        @DataAmount
+        int bytes;
+        @Label("Clientbound")
+        boolean clientbound;
+        @Label("Receivers")
+        int receivers;
+
+        public void finish(int receivers) {
+            end();
+            if (shouldCommit()) {
+                this.receivers = receivers;
+                commit();
+            }
+        }
+    }
+
+    @Name("fluxnetworks.WirelessCharge")
+    @Label("Wireless Charge")
+    @Category(CATEGORY)
+    @Description("A wireless charging pass of a flux controller")
+    @StackTrace(false)
+    public static final class WirelessCharge extends Event {
+
+        @Label("Network ID")
+        int networkID;
+        @Label("Players")
+        int players;
+        @Label("Charged Slots")
+        int chargedSlots;
+        @Label("Skipped Slots")
+        int skippedSlots;
+        @Label("Energy Moved")
+        long energy;
+
+        public void finish(int networkID, int players, int chargedSlots, int skippedSlots, long energy) {
+            end();
+            if (shouldCommit()) {
+                this.networkID = networkID;
+                this.players = players;
+                this.chargedSlots = chargedSlots;
+                this.skippedSlots = skippedSlots;
+                this.energy = energy;
+                commit();
+            }
+        }
+    }
+}
@@ -22,9 +22,6 @@ import java.util.Collection;
 
 public class FluxUtils {
 
-    private static final double[] COMPACT_SCALE = new double[]{0.001D, 0.000_001D, 0.000_000_001D, 0.000_000_000_001D,
-            0.000_000_000_000_001D, 0.000_000_000_000_000_001D};
-
     /**
      * A read-only array avoided new object creation.
      */
@@ -275,21 +272,11 @@ public class FluxUtils {
      * @return compact string
      */
     public static String compact(long in) {
-        if (in < 1000) {
-            return Long.toString(in);
-        }
-        int level = (int) (Math.log10(in) / 3) - 1;
-        char pre = "kMGTPE".charAt(level);
-        return String.format("%.1f%c", in * COMPACT_SCALE[level], pre);
+        return EnergyFormat.compact(in);
     }
 
     public static String compact(long in, String suffix) {
-        if (in < 1000) {
-            return in + " " + suffix;
-        }
-        int level = (int) (Math.log10(in) / 3) - 1;
-        char pre = "kMGTPE".charAt(level);
-        return String.format("%.1f %c%s", in * COMPACT_SCALE[level], pre, suffix);
+        return EnergyFormat.compact(in, suffix);
     }
 
     /*public static String format(long in, NumberFormatType style, EnergyType energy, boolean usage) {
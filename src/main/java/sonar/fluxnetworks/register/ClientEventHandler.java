@@ -3,11 +3,15 @@ package sonar.fluxnetworks.register;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.client.event.CustomizeGuiOverlayEvent;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import sonar.fluxnetworks.FluxNetworks;
 import sonar.fluxnetworks.client.ClientCache;
 
+import javax.annotation.Nonnull;
+
 @OnlyIn(Dist.CLIENT)
 @Mod.EventBusSubscriber(value = Dist.CLIENT, modid = FluxNetworks.MODID)
 public class ClientEventHandler {
@@ -15,14 +19,28 @@ public class ClientEventHandler {
     @SubscribeEvent
     public static void onPlayerLoggedOut(ClientPlayerNetworkEvent.LoggingOut event) {
         ClientCache.release();
+        ClientMessages.reset();
         //FluxColorHandler.INSTANCE.reset();
     }
 
-    /*@SubscribeEvent
+    @SubscribeEvent
+    public static void onDebugText(CustomizeGuiOverlayEvent.DebugText event) {
+        if (ClientCache.getDirectory().size() > 0) {
+            event.getRight().add("");
+            event.getRight().add(String.format("[%s] Networks: %d, Detailed: %d, Evicted: %d", FluxNetworks.NAME,
+                    ClientCache.getDirectory().size(), ClientCache.getDetailedCount(),
+                    ClientCache.getEvictionCount()));
+            event.getRight().add(String.format("[%s] Decode avg: %d \u00b5s, Apply avg: %d \u00b5s", FluxNetworks.NAME,
+                    ClientMessages.getAverageDecodeMicros(), ClientMessages.getAverageApplyMicros()));
+        }
+    }
+
+    @SubscribeEvent
     public static void onClientTick(@Nonnull TickEvent.ClientTickEvent event) {
         if (event.phase == TickEvent.Phase.END) {
+            ClientMessages.tick();
             //FluxClientCache.tick();
             //FluxColorHandler.INSTANCE.tick();
         }
-    }*/
+    }
 }
@@ -14,13 +14,20 @@ import sonar.fluxnetworks.api.FluxConstants;
 import sonar.fluxnetworks.api.device.IFluxDevice;
 import sonar.fluxnetworks.api.network.SecurityLevel;
 import sonar.fluxnetworks.client.ClientCache;
+import sonar.fluxnetworks.client.NetworkSnapshot;
 import sonar.fluxnetworks.common.connection.FluxMenu;
 import sonar.fluxnetworks.common.connection.FluxNetwork;
+import sonar.fluxnetworks.common.connection.NetworkHistory;
+import sonar.fluxnetworks.common.connection.PhantomFluxDevice;
 import sonar.fluxnetworks.common.device.TileFluxDevice;
+import sonar.fluxnetworks.common.util.FluxEvents;
 import sonar.fluxnetworks.common.util.FluxUtils;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import static sonar.fluxnetworks.register.Channel.sChannel;
@@ -34,7 +41,27 @@ import static sonar.fluxnetworks.register.Channel.sChannel;
 @ParametersAreNonnullByDefault
 public class ClientMessages {
 
+    // time spent on decoding network updates on the network thread, and applying them on the main thread
+    private static final AtomicLong sDecodeNanos = new AtomicLong();
+    private static final AtomicInteger sDecodeCount = new AtomicInteger();
+    private static long sApplyNanos;
+    private static int sApplyCount;
+
+    /**
+     * The number of client ticks to wait for more edits before sending a {@link Messages#C2S_EDIT_TILE}.
+     */
+    public static final int EDIT_TILE_DELAY = 5;
+
+    // the pending edit tile request, main thread
+    private static int sEditToken;
+    @Nullable
+    private static TileFluxDevice sEditDevice;
+    @Nullable
+    private static CompoundTag sEditTag;
+    private static int sEditTicks;
+
     public static void deviceBuffer(TileFluxDevice device, byte type) {
+        flushEditTile();
         assert type > 0; // C2S positive
         var buf = Channel.buffer(Messages.C2S_DEVICE_BUFFER);
         buf.writeBlockPos(device.getBlockPos());
@@ -49,6 +76,7 @@ public class ClientMessages {
      * @param token a token, can be invalid (0)
      */
     public static void superAdmin(int token, boolean enable) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_SUPER_ADMIN);
         buf.writeByte(token);
         buf.writeBoolean(enable);
@@ -62,6 +90,7 @@ public class ClientMessages {
      */
     public static void createNetwork(int token, String name, int color,
                                      SecurityLevel security, String password) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_CREATE_NETWORK);
         buf.writeByte(token);
         buf.writeUtf(name, 256);
@@ -79,6 +108,7 @@ public class ClientMessages {
      * @param token must be valid
      */
     public static void deleteNetwork(int token, FluxNetwork network) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_DELETE_NETWORK);
         buf.writeByte(token);
         buf.writeVarInt(network.getNetworkID());
@@ -86,20 +116,47 @@ public class ClientMessages {
     }
 
     /**
-     * Request to edit an interacting block entity.
+     * Request to edit an interacting block entity. Edits are debounced, a stream of edits to the
+     * same device, such as typing in a text field, is merged and sent once after
+     * {@link #EDIT_TILE_DELAY} ticks without edits, or when the menu is closed. Other requests
+     * send the pending edit first, so that requests reach the server in the order they were made.
      *
      * @param token must be valid
+     * @see #flushEditTile()
      */
     public static void editTile(int token, TileFluxDevice device, CompoundTag tag) {
-        var buf = Channel.buffer(Messages.C2S_EDIT_TILE);
-        buf.writeByte(token);
-        buf.writeBlockPos(device.getBlockPos());
-        buf.writeNbt(tag);
-        sChannel.sendToServer(buf);
+        if (sEditTag != null && (sEditToken != token || sEditDevice != device)) {
+            flushEditTile();
+        }
+        if (sEditTag == null) {
+            sEditToken = token;
+            sEditDevice = device;
+            sEditTag = tag.copy();
+        } else {
+            // the later value wins
+            sEditTag.merge(tag);
+        }
+        sEditTicks = EDIT_TILE_DELAY;
+    }
+
+    /**
+     * Send the pending edit to the block entity now, if any.
+     */
+    public static void flushEditTile() {
+        if (sEditTag != null) {
+            var buf = Channel.buffer(Messages.C2S_EDIT_TILE);
+            buf.writeByte(sEditToken);
+            buf.writeBlockPos(sEditDevice.getBlockPos());
+            buf.writeNbt(sEditTag);
+            sChannel.sendToServer(buf);
+            sEditTag = null;
+            sEditDevice = null;
+        }
     }
 
     // set (connect to) network for a block entity
     public static void tileNetwork(int token, TileFluxDevice device, FluxNetwork network, String password) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_TILE_NETWORK);
         buf.writeByte(token);
         buf.writeBlockPos(device.getBlockPos());
@@ -109,6 +166,7 @@ public class ClientMessages {
     }
 
     public static void editMember(int token, FluxNetwork network, UUID uuid, byte type) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_EDIT_MEMBER);
         buf.writeByte(token);
         buf.writeVarInt(network.getNetworkID());
@@ -119,6 +177,7 @@ public class ClientMessages {
 
     public static void editNetwork(int token, FluxNetwork network, String name, int color,
                                    SecurityLevel security, String password) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_EDIT_NETWORK);
         buf.writeByte(token);
         buf.writeVarInt(network.getNetworkID());
@@ -132,18 +191,23 @@ public class ClientMessages {
     }
 
     public static void editConnection(int token, FluxNetwork network, List<GlobalPos> list, CompoundTag tag) {
+        flushEditTile();
         if (list.isEmpty()) {
             return;
         }
-        var buf = Channel.buffer(Messages.C2S_EDIT_CONNECTION);
-        buf.writeByte(token);
-        buf.writeVarInt(network.getNetworkID());
-        buf.writeVarInt(list.size());
-        for (var pos : list) {
-            FluxUtils.writeGlobalPos(buf, pos);
+        // the server applies each message in a batch
+        for (int from = 0; from < list.size(); from += Messages.MAX_EDIT_CONNECTIONS) {
+            final int to = Math.min(from + Messages.MAX_EDIT_CONNECTIONS, list.size());
+            var buf = Channel.buffer(Messages.C2S_EDIT_CONNECTION);
+            buf.writeByte(token);
+            buf.writeVarInt(network.getNetworkID());
+            buf.writeVarInt(to - from);
+            for (int i = from; i < to; i++) {
+                FluxUtils.writeGlobalPos(buf, list.get(i));
+            }
+            buf.writeNbt(tag);
+            sChannel.sendToServer(buf);
         }
-        buf.writeNbt(tag);
-        sChannel.sendToServer(buf);
     }
 
     /**
@@ -152,6 +216,7 @@ public class ClientMessages {
      * @param token a valid token
      */
     public static void updateNetwork(int token, FluxNetwork network, byte type) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_UPDATE_NETWORK);
         buf.writeByte(token);
         buf.writeVarInt(1); // size
@@ -166,6 +231,7 @@ public class ClientMessages {
      * @param token a valid token
      */
     public static void updateNetwork(int token, Collection<FluxNetwork> networks, byte type) {
+        flushEditTile();
         if (networks.isEmpty()) {
             return;
         }
@@ -180,6 +246,7 @@ public class ClientMessages {
     }
 
     public static void wirelessMode(int token, int wirelessMode, int wirelessNetwork) {
+        flushEditTile();
         var buf = Channel.buffer(Messages.C2S_WIRELESS_MODE);
         buf.writeByte(token);
         buf.writeInt(wirelessMode);
@@ -187,7 +254,8 @@ public class ClientMessages {
         sChannel.sendToServer(buf);
     }
 
-    public static void disconnect(int token, FluxNetwork network, Collection<IFluxDevice> list) {
+    public static void disconnect(int token, FluxNetwork network, Collection<GlobalPos> list) {
+        flushEditTile();
         if (list.isEmpty()) {
             return;
         }
@@ -195,13 +263,14 @@ public class ClientMessages {
         buf.writeByte(token);
         buf.writeVarInt(network.getNetworkID());
         buf.writeVarInt(list.size());
-        for (var device : list) {
-            FluxUtils.writeGlobalPos(buf, device.getGlobalPos());
+        for (var pos : list) {
+            FluxUtils.writeGlobalPos(buf, pos);
         }
         sChannel.sendToServer(buf);
     }
 
     public static void updateConnections(int token, FluxNetwork network, Collection<IFluxDevice> list) {
+        flushEditTile();
         if (list.isEmpty()) {
             return;
         }
@@ -215,15 +284,83 @@ public class ClientMessages {
         sChannel.sendToServer(buf);
     }
 
+    /**
+     * Request statistics history samples of a network since the given sequence number.
+     *
+     * @param token      a valid token
+     * @param resolution the resolution, e.g. {@link NetworkHistory#SECONDS}
+     * @param since      the sequence number of the client's next sample
+     * @see sonar.fluxnetworks.common.connection.ClientNetworkHistory#getCount(int)
+     */
+    public static void trackStatistics(int token, FluxNetwork network, int resolution, long since) {
+        flushEditTile();
+        var buf = Channel.buffer(Messages.C2S_TRACK_STATISTICS);
+        buf.writeByte(token);
+        buf.writeVarInt(network.getNetworkID());
+        buf.writeByte(resolution);
+        buf.writeVarLong(since);
+        sChannel.sendToServer(buf);
+    }
+
+    // called at the end of a client tick
+    static void tick() {
+        if (sEditTag != null && --sEditTicks <= 0) {
+            flushEditTile();
+        }
+    }
+
+    // called when logging out, the pending edit is no longer valid
+    static void reset() {
+        sEditTag = null;
+        sEditDevice = null;
+    }
+
+    /**
+     * @return the average time of decoding a network update off the main thread, in microseconds
+     */
+    public static long getAverageDecodeMicros() {
+        final int count = sDecodeCount.get();
+        return count > 0 ? sDecodeNanos.get() / count / 1000 : 0;
+    }
+
+    /**
+     * @return the average time of applying a decoded network update on the main thread, in microseconds
+     */
+    public static long getAverageApplyMicros() {
+        return sApplyCount > 0 ? sApplyNanos / sApplyCount / 1000 : 0;
+    }
+
+    private static void endDecode(long startNanos) {
+        sDecodeNanos.addAndGet(System.nanoTime() - startNanos);
+        sDecodeCount.incrementAndGet();
+    }
+
+    // main thread
+    private static void endApply(long startNanos) {
+        sApplyNanos += System.nanoTime() - startNanos;
+        sApplyCount++;
+    }
+
     static void msg(short index, FriendlyByteBuf payload, Supplier<LocalPlayer> player) {
+        final FluxEvents.MessageDecode event = FluxEvents.beginMessageDecode(index, payload, true);
         Minecraft minecraft = Minecraft.getInstance();
-        switch (index) {
-            case Messages.S2C_DEVICE_BUFFER -> onDeviceBuffer(payload, player, minecraft);
-            case Messages.S2C_RESPONSE -> onResponse(payload, player, minecraft);
-            case Messages.S2C_CAPABILITY -> onCapability(payload, player, minecraft);
-            case Messages.S2C_UPDATE_NETWORK -> onUpdateNetwork(payload, player, minecraft);
-            case Messages.S2C_DELETE_NETWORK -> onDeleteNetwork(payload, player, minecraft);
-            case Messages.S2C_UPDATE_CONNECTIONS -> onUpdateConnections(payload, player, minecraft);
+        boolean failed = true;
+        try {
+            switch (index) {
+                case Messages.S2C_DEVICE_BUFFER -> onDeviceBuffer(payload, player, minecraft);
+                case Messages.S2C_RESPONSE -> onResponse(payload, player, minecraft);
+                case Messages.S2C_CAPABILITY -> onCapability(payload, player, minecraft);
+                case Messages.S2C_UPDATE_NETWORK -> onUpdateNetwork(payload, player, minecraft);
+                case Messages.S2C_DELETE_NETWORK -> onDeleteNetwork(payload, player, minecraft);
+                case Messages.S2C_UPDATE_CONNECTIONS -> onUpdateConnections(payload, player, minecraft);
+                case Messages.S2C_NETWORK_HISTORY -> onNetworkHistory(payload, player, minecraft);
+            }
+            failed = false;
+        } finally {
+            // record failed decodes as well
+            if (event != null) {
+                event.finish(failed);
+            }
         }
     }
 
@@ -278,21 +415,26 @@ public class ClientMessages {
 
     private static void onUpdateNetwork(FriendlyByteBuf payload, Supplier<LocalPlayer> player,
                                         BlockableEventLoop<?> looper) {
+        final long startNanos = System.nanoTime();
         final byte type = payload.readByte();
         final int size = payload.readVarInt();
-        final Int2ObjectMap<CompoundTag> map = new Int2ObjectArrayMap<>(size);
+        final Int2ObjectMap<NetworkSnapshot> map = new Int2ObjectArrayMap<>(size);
         for (int i = 0; i < size; i++) {
             final int id = payload.readVarInt();
             final CompoundTag tag = payload.readNbt();
             assert tag != null;
-            map.put(id, tag);
+            // decode members and connections here, off the main thread
+            map.put(id, NetworkSnapshot.decode(tag, type));
         }
+        endDecode(startNanos);
         looper.execute(() -> {
             LocalPlayer p = player.get();
             if (p == null) {
                 return;
             }
+            final long applyNanos = System.nanoTime();
             ClientCache.updateNetwork(map, type);
+            endApply(applyNanos);
             if (p.containerMenu instanceof FluxMenu m && m.mOnResultListener != null) {
                 m.mOnResultListener.onResult(m, FluxConstants.REQUEST_UPDATE_NETWORK, 0);
             }
@@ -316,21 +458,57 @@ public class ClientMessages {
 
     private static void onUpdateConnections(FriendlyByteBuf payload, Supplier<LocalPlayer> player,
                                             BlockableEventLoop<?> looper) {
+        final long startNanos = System.nanoTime();
         final int id = payload.readVarInt();
         final int size = payload.readVarInt();
-        final List<CompoundTag> tags = new ArrayList<>();
+        final List<PhantomFluxDevice> devices = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
-            tags.add(payload.readNbt());
+            final CompoundTag tag = payload.readNbt();
+            assert tag != null;
+            devices.add(PhantomFluxDevice.makeUpdated(FluxUtils.readGlobalPos(tag), tag));
         }
+        endDecode(startNanos);
         looper.execute(() -> {
             LocalPlayer p = player.get();
             if (p == null) {
                 return;
             }
-            ClientCache.updateConnections(id, tags);
+            final long applyNanos = System.nanoTime();
+            ClientCache.updateConnections(id, devices);
+            endApply(applyNanos);
             if (p.containerMenu instanceof FluxMenu m && m.mOnResultListener != null) {
                 m.mOnResultListener.onResult(m, FluxConstants.REQUEST_UPDATE_CONNECTION, 0);
             }
         });
     }
+
+    private static void onNetworkHistory(FriendlyByteBuf payload, Supplier<LocalPlayer> player,
+                                         BlockableEventLoop<?> looper) {
+        final long startNanos = System.nanoTime();
+        final int id = payload.readVarInt();
+        final int resolution = payload.readByte();
+        final long start = payload.readVarLong();
+        final int n = payload.readVarInt();
+        if (resolution < 0 || resolution >= NetworkHistory.RESOLUTION_COUNT ||
+                n < 0 || n > NetworkHistory.getCapacity(resolution)) {
+            throw new IllegalArgumentException();
+        }
+        // decode deltas here, off the main thread
+        final long[] samples = new long[n * NetworkHistory.CHANNEL_COUNT];
+        for (int i = 0; i < samples.length; i++) {
+            final long zigzag = payload.readVarLong();
+            final long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+            samples[i] = i < NetworkHistory.CHANNEL_COUNT ? delta : samples[i - NetworkHistory.CHANNEL_COUNT] + delta;
+        }
+        endDecode(startNanos);
+        looper.execute(() -> {
+            LocalPlayer p = player.get();
+            if (p == null) {
+                return;
+            }
+            final long applyNanos = System.nanoTime();
+            ClientCache.updateHistory(id, resolution, start, samples, n);
+            endApply(applyNanos);
+        });
+    }
 }
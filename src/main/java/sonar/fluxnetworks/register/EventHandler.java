@@ -18,6 +18,7 @@ import net.minecraft.world.phys.AABB;
 import net.minecraftforge.event.*;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
+import net.minecraftforge.event.server.ServerStartedEvent;
 import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
@@ -26,8 +27,8 @@ import sonar.fluxnetworks.FluxNetworks;
 import sonar.fluxnetworks.api.FluxConstants;
 import sonar.fluxnetworks.common.capability.FluxPlayer;
 import sonar.fluxnetworks.common.capability.FluxPlayerProvider;
-import sonar.fluxnetworks.common.connection.FluxNetwork;
 import sonar.fluxnetworks.common.connection.FluxNetworkData;
+import sonar.fluxnetworks.common.device.NeighbourDiscovery;
 import sonar.fluxnetworks.common.util.FluxCommands;
 import sonar.fluxnetworks.common.util.FluxUtils;
 
@@ -39,16 +40,25 @@ public class EventHandler {
 
     //// SERVER EVENTS \\\\
 
+    @SubscribeEvent
+    public static void onServerStarted(@Nonnull ServerStartedEvent event) {
+        FluxNetworkData.restoreChunkLoaders(event.getServer());
+    }
+
     @SubscribeEvent
     public static void onServerStopped(ServerStoppedEvent event) {
         // mainly used to reload data while changing single-player saves, unnecessary on dedicated server
         FluxNetworkData.release();
+        NeighbourDiscovery.clear();
+        MessageQueue.clear();
     }
 
     @SubscribeEvent
     public static void onServerTick(@Nonnull TickEvent.ServerTickEvent event) {
         if (event.phase == TickEvent.Phase.END) {
-            FluxNetworkData.getAllNetworks().forEach(FluxNetwork::onEndServerTick);
+            MessageQueue.drain(event.getServer());
+            NeighbourDiscovery.process();
+            FluxNetworkData.tickNetworks();
         }
     }
 
@@ -150,6 +160,12 @@ public class EventHandler {
         Messages.syncCapability(event.getEntity());
     }
 
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(@Nonnull PlayerEvent.PlayerLoggedOutEvent event) {
+        FluxNetworkData.getAccessCache().invalidatePlayer(event.getEntity().getUUID());
+        MessageQueue.remove(event.getEntity().getUUID());
+    }
+
     @SubscribeEvent
     public static void onAttachCapability(@Nonnull AttachCapabilitiesEvent<Entity> event) {
         // make server only
@@ -8,6 +8,7 @@ import net.minecraft.network.protocol.game.ServerboundCustomPayloadPacket;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.players.PlayerList;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
@@ -16,8 +17,10 @@ import net.minecraftforge.network.NetworkEvent;
 import net.minecraftforge.network.NetworkRegistry;
 import net.minecraftforge.server.ServerLifecycleHooks;
 import sonar.fluxnetworks.FluxNetworks;
+import sonar.fluxnetworks.common.util.FluxEvents;
 
 import javax.annotation.Nonnull;
+import java.util.List;
 
 public class FMLChannel extends Channel {
 
@@ -49,7 +52,11 @@ public class FMLChannel extends Channel {
     public void sendToServer(@Nonnull FriendlyByteBuf payload) {
         ClientPacketListener connection = Minecraft.getInstance().getConnection();
         if (connection != null) {
+            final FluxEvents.MessageSend event = FluxEvents.beginMessageSend(payload, false);
             connection.send(new ServerboundCustomPayloadPacket(CHANNEL_NAME, payload));
+            if (event != null) {
+                event.finish(1);
+            }
         } else {
             payload.release();
         }
@@ -57,19 +64,32 @@ public class FMLChannel extends Channel {
 
     @Override
     public void sendToPlayer(@Nonnull FriendlyByteBuf payload, @Nonnull ServerPlayer player) {
+        final FluxEvents.MessageSend event = FluxEvents.beginMessageSend(payload, true);
         player.connection.send(new ClientboundCustomPayloadPacket(CHANNEL_NAME, payload));
+        if (event != null) {
+            event.finish(1);
+        }
     }
 
     @Override
     public void sendToAll(@Nonnull FriendlyByteBuf payload) {
-        ServerLifecycleHooks.getCurrentServer().getPlayerList()
-                .broadcastAll(new ClientboundCustomPayloadPacket(CHANNEL_NAME, payload));
+        final FluxEvents.MessageSend event = FluxEvents.beginMessageSend(payload, true);
+        PlayerList playerList = ServerLifecycleHooks.getCurrentServer().getPlayerList();
+        playerList.broadcastAll(new ClientboundCustomPayloadPacket(CHANNEL_NAME, payload));
+        if (event != null) {
+            event.finish(playerList.getPlayerCount());
+        }
     }
 
     @Override
     public void sendToTrackingChunk(@Nonnull FriendlyByteBuf payload, @Nonnull LevelChunk chunk) {
+        final FluxEvents.MessageSend event = FluxEvents.beginMessageSend(payload, true);
         final ClientboundCustomPayloadPacket packet = new ClientboundCustomPayloadPacket(CHANNEL_NAME, payload);
-        ((ServerLevel) chunk.getLevel()).getChunkSource().chunkMap.getPlayers(
-                chunk.getPos(), /* boundaryOnly */ false).forEach(p -> p.connection.send(packet));
+        final List<ServerPlayer> players = ((ServerLevel) chunk.getLevel()).getChunkSource().chunkMap.getPlayers(
+                chunk.getPos(), /* boundaryOnly */ false);
+        players.forEach(p -> p.connection.send(packet));
+        if (event != null) {
+            event.finish(players.size());
+        }
     }
 }
@@ -0,0 +1,195 @@
+package sonar.fluxnetworks.register;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import sonar.fluxnetworks.FluxConfig;
+import sonar.fluxnetworks.FluxNetworks;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Commands of C2S messages waiting to be handled on the server thread, server only.
+ * <p>
+ * Messages are decoded and validated on the network thread into commands, which are queued by
+ * their senders. All queues are drained in one batch at the end of each server tick. Each player
+ * runs at most {@link FluxConfig#maximumMessagesPerTick} commands per tick, the rest wait for
+ * later ticks in order. A player having more than {@link FluxConfig#maximumQueuedMessages}
+ * commands waiting is disconnected and the commands are dropped, so that a client cannot flood
+ * the server thread or memory.
+ * <p>
+ * Consecutive edits to the same device are merged, and applied once before the next command of
+ * another kind, or after all commands.
+ *
+ * @see Messages
+ */
+public final class MessageQueue {
+
+    private static final ConcurrentHashMap<UUID, PlayerQueue> sQueues = new ConcurrentHashMap<>();
+
+    // metrics, server thread
+    private static int sDepth;
+    private static int sPeakDepth;
+    private static long sExecuted;
+    private static long sDeferred;
+    private static int sFloods;
+
+    private MessageQueue() {
+    }
+
+    /**
+     * Queue a command, called on the network thread.
+     *
+     * @param player  the sender
+     * @param command the command, accepting the sender when handled
+     */
+    static void enqueue(@Nonnull ServerPlayer player, @Nonnull Consumer<ServerPlayer> command) {
+        final PlayerQueue queue = sQueues.computeIfAbsent(player.getUUID(), __ -> new PlayerQueue());
+        if (queue.mSize.incrementAndGet() > FluxConfig.maximumQueuedMessages) {
+            queue.mSize.decrementAndGet();
+            queue.mFlooded = true;
+            return;
+        }
+        queue.mCommands.add(command);
+    }
+
+    /**
+     * Handle queued commands, called at the end of a server tick before networks tick.
+     */
+    public static void drain(@Nonnull MinecraftServer server) {
+        if (sQueues.isEmpty()) {
+            Messages.applyEdits();
+            sDepth = 0;
+            return;
+        }
+        int depth = 0;
+        for (var it = sQueues.entrySet().iterator(); it.hasNext(); ) {
+            final var e = it.next();
+            final PlayerQueue queue = e.getValue();
+            depth += queue.mSize.get();
+            final ServerPlayer p = server.getPlayerList().getPlayer(e.getKey());
+            if (p == null) {
+                // logged out
+                it.remove();
+                continue;
+            }
+            if (queue.mFlooded) {
+                it.remove();
+                sFloods++;
+                Messages.kick(p, new IllegalStateException("More than " + FluxConfig.maximumQueuedMessages +
+                        " messages are queued"));
+                continue;
+            }
+            run(queue, p);
+            if (!queue.mCommands.isEmpty()) {
+                sDeferred++;
+            }
+            queue.mSpent = 0;
+        }
+        Messages.applyEdits();
+        sDepth = depth;
+        sPeakDepth = Math.max(sPeakDepth, depth);
+    }
+
+    /**
+     * Handle queued commands of a player now, called before the player's menu is closed.
+     * Vanilla packets are handled before the end of a tick, so commands sent before closing the
+     * menu would otherwise be handled after it was closed, and be rejected. This shares the limit
+     * per tick with {@link #drain(MinecraftServer)}, so closing menus doesn't bypass the limit.
+     */
+    public static void drain(@Nonnull ServerPlayer player) {
+        final PlayerQueue queue = sQueues.get(player.getUUID());
+        if (queue != null && !queue.mFlooded) {
+            run(queue, player);
+            if (!queue.mCommands.isEmpty()) {
+                sDeferred++;
+            }
+        }
+    }
+
+    private static void run(@Nonnull PlayerQueue queue, @Nonnull ServerPlayer p) {
+        if (queue.mRunning) {
+            // a command closed the menu
+            return;
+        }
+        queue.mRunning = true;
+        try {
+            Consumer<ServerPlayer> command;
+            for (; queue.mSpent < FluxConfig.maximumMessagesPerTick; queue.mSpent++) {
+                if ((command = queue.mCommands.poll()) == null) {
+                    break;
+                }
+                queue.mSize.decrementAndGet();
+                try {
+                    command.accept(p);
+                } catch (RuntimeException e) {
+                    FluxNetworks.LOGGER.error("Failed to handle message from player {}",
+                            p.getGameProfile().getName(), e);
+                }
+                sExecuted++;
+            }
+        } finally {
+            queue.mRunning = false;
+        }
+    }
+
+    public static void remove(@Nonnull UUID uuid) {
+        sQueues.remove(uuid);
+    }
+
+    // called when the server stopped
+    public static void clear() {
+        sQueues.clear();
+        sDepth = 0;
+        sPeakDepth = 0;
+        sExecuted = 0;
+        sDeferred = 0;
+        sFloods = 0;
+        Messages.clearEdits();
+    }
+
+    /**
+     * @return the number of commands waiting at the start of the last drain
+     */
+    public static int getDepth() {
+        return sDepth;
+    }
+
+    public static int getPeakDepth() {
+        return sPeakDepth;
+    }
+
+    public static long getExecutedCount() {
+        return sExecuted;
+    }
+
+    /**
+     * @return the number of times a player reached the limit per tick with commands left
+     */
+    public static long getDeferredCount() {
+        return sDeferred;
+    }
+
+    /**
+     * @return the number of players disconnected for flooding
+     */
+    public static int getFloodCount() {
+        return sFloods;
+    }
+
+    private static final class PlayerQueue {
+
+        private final ConcurrentLinkedQueue<Consumer<ServerPlayer>> mCommands = new ConcurrentLinkedQueue<>();
+        // the size of the queue, ConcurrentLinkedQueue.size() is not constant time
+        private final AtomicInteger mSize = new AtomicInteger();
+        private volatile boolean mFlooded;
+        // server thread
+        private boolean mRunning;
+        // the number of commands handled in this tick
+        private int mSpent;
+    }
+}
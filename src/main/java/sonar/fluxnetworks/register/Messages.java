@@ -1,28 +1,30 @@
 package sonar.fluxnetworks.register;
 
+import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.GlobalPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.chat.Component;
-import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
-import net.minecraft.util.thread.BlockableEventLoop;
 import net.minecraft.world.entity.player.Player;
-import net.minecraftforge.server.ServerLifecycleHooks;
 import sonar.fluxnetworks.FluxNetworks;
 import sonar.fluxnetworks.api.FluxConstants;
 import sonar.fluxnetworks.api.device.IFluxDevice;
 import sonar.fluxnetworks.api.network.SecurityLevel;
 import sonar.fluxnetworks.api.network.WirelessType;
 import sonar.fluxnetworks.common.capability.FluxPlayer;
+import sonar.fluxnetworks.common.connection.DeviceSettings;
 import sonar.fluxnetworks.common.connection.FluxMenu;
 import sonar.fluxnetworks.common.connection.FluxNetwork;
 import sonar.fluxnetworks.common.connection.FluxNetworkData;
+import sonar.fluxnetworks.common.connection.NetworkHistory;
 import sonar.fluxnetworks.common.connection.ServerFluxNetwork;
 import sonar.fluxnetworks.common.device.TileFluxDevice;
 import sonar.fluxnetworks.common.item.ItemAdminConfigurator;
+import sonar.fluxnetworks.common.util.FluxEvents;
 import sonar.fluxnetworks.common.util.FluxUtils;
 
 import javax.annotation.Nonnull;
@@ -51,6 +53,8 @@ import static sonar.fluxnetworks.register.Channel.sChannel;
  *   <li><b>Response</b>: the return code sent by the server to the client to respond to a client request.
  *   There's a key used to identify the request, generally, it is the same as the message index.
  *   That is, modal, client is waiting for the server.</li>
+ *   <li><b>Command</b>: a C2S message decoded and validated on the network thread, queued by its sender
+ *   and handled on the server thread at the end of a tick, see {@link MessageQueue}.</li>
  * </ul>
  *
  * @author BloCamLimb
@@ -91,6 +95,18 @@ public class Messages {
     static final int S2C_DELETE_NETWORK = 4;
     static final int S2C_UPDATE_CONNECTIONS = 5;
     static final int S2C_UPDATE_MEMBERS = 6;
+    static final int S2C_NETWORK_HISTORY = 7;
+
+    /**
+     * The maximum number of devices in a {@link #C2S_EDIT_CONNECTION} message, serverbound payloads
+     * are limited to 32 KiB.
+     */
+    static final int MAX_EDIT_CONNECTIONS = 512;
+
+    // settings edited by players in the current drain, applied after all commands, server thread
+    private static final Reference2ObjectLinkedOpenHashMap<TileFluxDevice, DeviceSettings> sPendingEdits =
+            new Reference2ObjectLinkedOpenHashMap<>();
+    private static long sCoalescedEdits;
 
     /**
      * Byte stream.
@@ -163,6 +179,39 @@ public class Messages {
         return buf;
     }
 
+    /**
+     * Stream history samples since the client's sequence number. Each value is zigzag encoded
+     * as the difference to the same channel of the previous sample.
+     *
+     * @param since the sequence number of the client's next sample
+     */
+    @Nonnull
+    private static FriendlyByteBuf networkHistory(FluxNetwork network, NetworkHistory history,
+                                                  int resolution, long since) {
+        final long count = history.getCount(resolution);
+        final int size = history.size(resolution);
+        if (since > count || since < count - size) {
+            // not continuous, send all
+            since = count - size;
+        }
+        final int n = (int) (count - since);
+        var buf = Channel.buffer(S2C_NETWORK_HISTORY);
+        buf.writeVarInt(network.getNetworkID());
+        buf.writeByte(resolution);
+        buf.writeVarLong(since);
+        buf.writeVarInt(n);
+        final long[] prev = new long[NetworkHistory.CHANNEL_COUNT];
+        for (int age = n - 1; age >= 0; age--) {
+            for (int c = 0; c < NetworkHistory.CHANNEL_COUNT; c++) {
+                final long v = history.get(resolution, age, c);
+                final long delta = v - prev[c];
+                buf.writeVarLong((delta << 1) ^ (delta >> 63));
+                prev[c] = v;
+            }
+        }
+        return buf;
+    }
+
     @Nonnull
     public static FriendlyByteBuf updateNetwork(Collection<FluxNetwork> networks, byte type) {
         var buf = Channel.buffer(S2C_UPDATE_NETWORK);
@@ -200,27 +249,45 @@ public class Messages {
         sChannel.sendToAll(buf);
     }
 
-    static void msg(short index, FriendlyByteBuf payload, Supplier<ServerPlayer> player) {
-        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
-        switch (index) {
-            case C2S_DEVICE_BUFFER -> onDeviceBuffer(payload, player, server);
-            case C2S_SUPER_ADMIN -> onSuperAdmin(payload, player, server);
-            case C2S_CREATE_NETWORK -> onCreateNetwork(payload, player, server);
-            case C2S_DELETE_NETWORK -> onDeleteNetwork(payload, player, server);
-            case C2S_EDIT_TILE -> onEditTile(payload, player, server);
-            case C2S_TILE_NETWORK -> onTileNetwork(payload, player, server);
-            case C2S_EDIT_MEMBER -> onEditMember(payload, player, server);
-            case C2S_EDIT_NETWORK -> onEditNetwork(payload, player, server);
-            case C2S_EDIT_CONNECTION -> onEditConnection(payload, player, server);
-            case C2S_UPDATE_NETWORK -> onUpdateNetwork(payload, player, server);
-            case C2S_WIRELESS_MODE -> onWirelessMode(payload, player, server);
-            case C2S_DISCONNECT -> onDisconnect(payload, player, server);
-            case C2S_UPDATE_CONNECTIONS -> onUpdateConnections(payload, player, server);
-            default -> kick(player.get(), new RuntimeException("Unidentified message index " + index));
+    /**
+     * Decode and validate a message on the network thread, then queue the command to handle it
+     * on the server thread, see {@link MessageQueue}.
+     */
+    static void msg(short index, FriendlyByteBuf payload, Supplier<ServerPlayer> sender) {
+        final ServerPlayer player = sender.get();
+        if (player == null) {
+            return;
+        }
+        final FluxEvents.MessageDecode event = FluxEvents.beginMessageDecode(index, payload, false);
+        boolean failed = true;
+        try {
+            switch (index) {
+                case C2S_DEVICE_BUFFER -> onDeviceBuffer(payload, player);
+                case C2S_SUPER_ADMIN -> onSuperAdmin(payload, player);
+                case C2S_CREATE_NETWORK -> onCreateNetwork(payload, player);
+                case C2S_DELETE_NETWORK -> onDeleteNetwork(payload, player);
+                case C2S_EDIT_TILE -> onEditTile(payload, player);
+                case C2S_TILE_NETWORK -> onTileNetwork(payload, player);
+                case C2S_EDIT_MEMBER -> onEditMember(payload, player);
+                case C2S_EDIT_NETWORK -> onEditNetwork(payload, player);
+                case C2S_EDIT_CONNECTION -> onEditConnection(payload, player);
+                case C2S_UPDATE_NETWORK -> onUpdateNetwork(payload, player);
+                case C2S_WIRELESS_MODE -> onWirelessMode(payload, player);
+                case C2S_DISCONNECT -> onDisconnect(payload, player);
+                case C2S_UPDATE_CONNECTIONS -> onUpdateConnections(payload, player);
+                case C2S_TRACK_STATISTICS -> onTrackStatistics(payload, player);
+                default -> kick(player, new RuntimeException("Unidentified message index " + index));
+            }
+            failed = false;
+        } finally {
+            // record failed decodes as well
+            if (event != null) {
+                event.finish(failed);
+            }
         }
     }
 
-    private static void kick(ServerPlayer p, RuntimeException e) {
+    static void kick(ServerPlayer p, RuntimeException e) {
         if (p.server.isDedicatedServer()) {
             p.connection.disconnect(Component.translatable("multiplayer.disconnect.invalid_packet"));
             FluxNetworks.LOGGER.info("Received invalid packet from player {}", p.getGameProfile().getName(), e);
@@ -235,32 +302,34 @@ public class Messages {
         }
     }
 
-    private static void onDeviceBuffer(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                       BlockableEventLoop<?> looper) {
-        payload.retain();
-        looper.execute(() -> {
-            ServerPlayer p = player.get();
+    private static void onDeviceBuffer(FriendlyByteBuf payload, ServerPlayer player) {
+        // decode
+        final BlockPos pos = payload.readBlockPos();
+        final byte id = payload.readByte();
+
+        // validate
+        if (id <= 0) {
+            throw new IllegalArgumentException();
+        }
+        // the body is read by the device, copy it rather than retaining the whole payload
+        final byte[] body = new byte[payload.readableBytes()];
+        payload.readBytes(body);
+
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             try {
-                if (p != null && p.level().getBlockEntity(payload.readBlockPos()) instanceof TileFluxDevice e) {
-                    if (e.canPlayerAccess(p)) {
-                        byte id = payload.readByte();
-                        if (id > 0) {
-                            e.readPacketBuffer(payload, id);
-                        } else {
-                            throw new IllegalArgumentException();
-                        }
-                        consume(payload);
-                    }
+                if (p.level().getBlockEntity(pos) instanceof TileFluxDevice e && e.canPlayerAccess(p)) {
+                    final FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(body));
+                    e.readPacketBuffer(buf, id);
+                    consume(buf);
                 }
             } catch (RuntimeException e) {
                 kick(p, e);
             }
-            payload.release();
         });
     }
 
-    private static void onSuperAdmin(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                     BlockableEventLoop<?> looper) {
+    private static void onSuperAdmin(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final boolean enable = payload.readBoolean();
@@ -268,15 +337,13 @@ public class Messages {
         // validate
         consume(payload);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxPlayer fp = FluxUtils.get(p, FluxPlayer.FLUX_PLAYER);
             if (fp != null) {
                 if (fp.isSuperAdmin() || FluxPlayer.canActivateSuperAdmin(p)) {
                     if (fp.setSuperAdmin(enable)) {
+                        FluxNetworkData.getAccessCache().invalidatePlayer(p.getUUID());
                         syncCapability(p);
                     }
                 } else {
@@ -288,8 +355,7 @@ public class Messages {
         });
     }
 
-    private static void onEditTile(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                   BlockableEventLoop<?> looper) {
+    private static void onEditTile(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final BlockPos pos = payload.readBlockPos();
@@ -297,13 +363,9 @@ public class Messages {
 
         // validate
         consume(payload);
-        Objects.requireNonNull(tag);
+        final DeviceSettings settings = new DeviceSettings(Objects.requireNonNull(tag));
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
             boolean reject = p.containerMenu.containerId != token || !(p.containerMenu instanceof FluxMenu);
             if (reject) {
                 response(token, FluxConstants.REQUEST_EDIT_TILE, FluxConstants.RESPONSE_REJECT, p);
@@ -313,7 +375,12 @@ public class Messages {
                 if (p.level().isLoaded(pos) &&
                         p.level().getBlockEntity(pos) instanceof TileFluxDevice e &&
                         e.canPlayerAccess(p)) {
-                    e.readCustomTag(tag, FluxConstants.NBT_TILE_SETTINGS);
+                    // coalesce edits to the same device, so the device is changed and sorted once
+                    final DeviceSettings pending = sPendingEdits.putIfAbsent(e, settings);
+                    if (pending != null) {
+                        sPendingEdits.put(e, pending.merge(settings));
+                        sCoalescedEdits++;
+                    }
                 } else {
                     response(token, FluxConstants.REQUEST_EDIT_TILE, FluxConstants.RESPONSE_REJECT, p);
                 }
@@ -323,8 +390,43 @@ public class Messages {
         });
     }
 
-    private static void onCreateNetwork(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                        BlockableEventLoop<?> looper) {
+    /**
+     * Apply settings edited in the current drain, called after all commands are handled, and
+     * before any other command, so that commands are still applied in the order they were sent.
+     */
+    static void applyEdits() {
+        if (sPendingEdits.isEmpty()) {
+            return;
+        }
+        for (var it = sPendingEdits.reference2ObjectEntrySet().fastIterator(); it.hasNext(); ) {
+            final var e = it.next();
+            final TileFluxDevice device = e.getKey();
+            // the device may be broken by a later command
+            if (!device.isRemoved()) {
+                try {
+                    device.editSettings(e.getValue());
+                } catch (RuntimeException ex) {
+                    FluxNetworks.LOGGER.error("Failed to edit device at {}", device.getGlobalPos(), ex);
+                }
+            }
+        }
+        sPendingEdits.clear();
+    }
+
+    // called when the server stopped
+    static void clearEdits() {
+        sPendingEdits.clear();
+        sCoalescedEdits = 0;
+    }
+
+    /**
+     * @return the number of device edits merged into earlier edits of the same tick
+     */
+    public static long getCoalescedEditCount() {
+        return sCoalescedEdits;
+    }
+
+    private static void onCreateNetwork(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final String name = payload.readUtf(256);
@@ -341,11 +443,8 @@ public class Messages {
             throw new IllegalArgumentException("Invalid network password: " + password);
         }
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             boolean reject = p.containerMenu.containerId != token || !(p.containerMenu instanceof FluxMenu);
             if (reject) {
                 response(token, FluxConstants.REQUEST_CREATE_NETWORK, FluxConstants.RESPONSE_REJECT, p);
@@ -359,8 +458,7 @@ public class Messages {
         });
     }
 
-    private static void onDeleteNetwork(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                        BlockableEventLoop<?> looper) {
+    private static void onDeleteNetwork(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int networkID = payload.readVarInt();
@@ -368,11 +466,8 @@ public class Messages {
         // validate
         consume(payload);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
             if (network.isValid()) {
                 if (network.getPlayerAccess(p).canDelete()) {
@@ -387,8 +482,7 @@ public class Messages {
         });
     }
 
-    private static void onTileNetwork(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                      BlockableEventLoop<?> looper) {
+    private static void onTileNetwork(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final BlockPos pos = payload.readBlockPos();
@@ -401,11 +495,8 @@ public class Messages {
             throw new IllegalArgumentException("Invalid network password: " + password);
         }
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             if (p.level().getBlockEntity(pos) instanceof TileFluxDevice e) {
                 if (e.getNetworkID() == networkID) {
                     return;
@@ -440,8 +531,7 @@ public class Messages {
         });
     }
 
-    private static void onEditNetwork(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                      BlockableEventLoop<?> looper) {
+    private static void onEditNetwork(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int networkID = payload.readVarInt();
@@ -459,11 +549,8 @@ public class Messages {
             throw new IllegalArgumentException("Invalid network password: " + password);
         }
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
             boolean reject = checkTokenFailed(token, p, network);
             if (reject) {
@@ -493,8 +580,7 @@ public class Messages {
         });
     }
 
-    private static void onUpdateNetwork(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                        BlockableEventLoop<?> looper) {
+    private static void onUpdateNetwork(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int size = payload.readVarInt();
@@ -510,11 +596,8 @@ public class Messages {
         // validate
         consume(payload);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             boolean reject = true;
             if (p.containerMenu.containerId == token && p.containerMenu instanceof FluxMenu menu) {
                 if (FluxPlayer.isPlayerSuperAdmin(p)) {
@@ -545,8 +628,7 @@ public class Messages {
         });
     }
 
-    private static void onEditMember(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                     BlockableEventLoop<?> looper) {
+    private static void onEditMember(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int networkID = payload.readVarInt();
@@ -556,11 +638,8 @@ public class Messages {
         // validate
         consume(payload);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
             boolean reject = checkTokenFailed(token, p, network);
             if (reject) {
@@ -576,13 +655,12 @@ public class Messages {
         });
     }
 
-    private static void onEditConnection(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                         BlockableEventLoop<?> looper) {
+    private static void onEditConnection(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int networkID = payload.readVarInt();
         final int size = payload.readVarInt();
-        if (size <= 0) {
+        if (size <= 0 || size > MAX_EDIT_CONNECTIONS) {
             throw new IllegalArgumentException();
         }
         final List<GlobalPos> list = new ArrayList<>(size);
@@ -594,12 +672,10 @@ public class Messages {
         // validate
         consume(payload);
         Objects.requireNonNull(tag);
+        final DeviceSettings settings = new DeviceSettings(tag);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
             boolean reject = checkTokenFailed(token, p, network);
             if (reject) {
@@ -609,12 +685,7 @@ public class Messages {
             assert network.isValid();
             if (network.getPlayerAccess(p).canEdit()) {
                 try {
-                    for (GlobalPos pos : list) {
-                        IFluxDevice f = network.getConnectionByPos(pos);
-                        if (f instanceof TileFluxDevice e) {
-                            e.readCustomTag(tag, FluxConstants.NBT_TILE_SETTINGS);
-                        }
-                    }
+                    ((ServerFluxNetwork) network).applySettings(list, settings);
                 } catch (RuntimeException e) {
                     kick(p, e);
                     return;
@@ -646,8 +717,7 @@ public class Messages {
         return true;
     }
 
-    private static void onWirelessMode(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                       BlockableEventLoop<?> looper) {
+    private static void onWirelessMode(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int wirelessMode = payload.readInt();
@@ -656,11 +726,8 @@ public class Messages {
         // validate
         consume(payload);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxPlayer fp = FluxUtils.get(p, FluxPlayer.FLUX_PLAYER);
             if (fp != null) {
                 final FluxNetwork network = FluxNetworkData.getNetwork(wirelessNetwork);
@@ -685,8 +752,7 @@ public class Messages {
         });
     }
 
-    private static void onDisconnect(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                     BlockableEventLoop<?> looper) {
+    private static void onDisconnect(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int networkID = payload.readVarInt();
@@ -702,11 +768,8 @@ public class Messages {
         // validate
         consume(payload);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
             boolean reject = checkTokenFailed(token, p, network);
             if (reject) {
@@ -728,8 +791,7 @@ public class Messages {
         });
     }
 
-    private static void onUpdateConnections(FriendlyByteBuf payload, Supplier<ServerPlayer> player,
-                                            BlockableEventLoop<?> looper) {
+    private static void onUpdateConnections(FriendlyByteBuf payload, ServerPlayer player) {
         // decode
         final int token = payload.readByte();
         final int networkID = payload.readVarInt();
@@ -745,11 +807,8 @@ public class Messages {
         // validate
         consume(payload);
 
-        looper.execute(() -> {
-            final ServerPlayer p = player.get();
-            if (p == null) {
-                return;
-            }
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
             final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
             boolean reject = checkTokenFailed(token, p, network);
             if (reject) {
@@ -774,4 +833,32 @@ public class Messages {
             }
         });
     }
+
+    private static void onTrackStatistics(FriendlyByteBuf payload, ServerPlayer player) {
+        // decode
+        final int token = payload.readByte();
+        final int networkID = payload.readVarInt();
+        final int resolution = payload.readByte();
+        final long since = payload.readVarLong();
+
+        // validate
+        if (resolution < 0 || resolution >= NetworkHistory.RESOLUTION_COUNT) {
+            throw new IllegalArgumentException("Invalid resolution " + resolution);
+        }
+        consume(payload);
+
+        MessageQueue.enqueue(player, p -> {
+            applyEdits();
+            final FluxNetwork network = FluxNetworkData.getNetwork(networkID);
+            if (checkTokenFailed(token, p, network)) {
+                response(token, FluxConstants.REQUEST_UPDATE_NETWORK, FluxConstants.RESPONSE_REJECT, p);
+                return;
+            }
+            final NetworkHistory history = network.getHistory();
+            if (history != null) {
+                // samples are polled, so no response
+                sChannel.sendToPlayer(networkHistory(network, history, resolution, since), p);
+            }
+        });
+    }
 }
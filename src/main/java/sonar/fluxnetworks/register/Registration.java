@@ -29,6 +29,7 @@ public class Registration {
     @SubscribeEvent
     public static void setup(FMLCommonSetupEvent event) {
         Channel.sChannel = new FMLChannel();
+        // tickets of older versions, they are moved to ChunkLoadingManager when devices first tick
         event.enqueueWork(() -> ForgeChunkManager.setForcedChunkLoadingCallback(FluxNetworks.MODID, (level, helper) -> {
             if (!FluxConfig.enableChunkLoading) {
                 helper.getBlockTickets().keySet().forEach(helper::removeAllTickets);
@@ -52,7 +53,7 @@ public class Registration {
                         helper.removeAllTickets(entry.getKey());
                     }
                 }
-                FluxNetworks.LOGGER.info("Load {} chunks by {} flux devices in {}",
+                FluxNetworks.LOGGER.info("Load {} legacy chunks by {} flux devices in {}",
                         chunks, helper.getBlockTickets().size(), level.dimension().location());
             }
         }));